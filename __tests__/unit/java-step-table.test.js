@@ -0,0 +1,207 @@
+import os from 'os'
+import path from 'path'
+import JavaAppiumScriptGenerator from '../../src/services/java'
+import {readFile, removeDir} from '../../src/utils/fs-wrapper'
+
+// The generated project is checked on disk, zipping it is not needed
+jest.mock('../../src/utils/compress', () => ({
+  __esModule: true,
+  default: jest.fn()
+}))
+
+const JAVA_JUNIT_INPUT_FILE = path.resolve(__dirname, '../resource/java-junit-input.json')
+const STEP_TABLE_FILE = path.resolve(__dirname, '../../src/templates/java/StepTable.java')
+
+/**
+ * Reads the constants of the `StepTable.COMMANDS` enum run by `TestBase.runStep()`.
+ * @returns {Array} The names of the enum constants.
+ */
+async function readStepTableCommands() {
+  const stepTableCode = await readFile(STEP_TABLE_FILE, 'utf8')
+  const [, constants] = stepTableCode.match(/enum COMMANDS \{([^}]*)\}/)
+  return constants.split(',').map((constant) => constant.trim())
+}
+
+/**
+ * Builds recorded touch steps, each with its own element locator.
+ * @param {number} count - The number of steps.
+ * @returns {Array} The test steps.
+ */
+function buildTouchSteps(count) {
+  return Array.from({length: count}, (_, index) => ({
+    id: String(index + 1),
+    context: 'NATIVE',
+    selectorConfigurations: [{
+      selectors: [{type: 'xpath', value: `//*[@resource-id='app:id/field_${index + 1}']`}]
+    }],
+    actionJson: JSON.stringify({command: 'touchOnElement', x: '0.5', y: '0.5'})
+  }))
+}
+
+/**
+ * Unit tests for the step table and `Locators` class generated for Java projects.
+ */
+describe('../../src/services/java', () => {
+  const workingDir = path.join(os.tmpdir(), `java-step-table-${process.pid}`)
+  let requestJson, outputProject
+
+  /**
+   * Generates the JUnit project of the test resource once for all test cases.
+   */
+  beforeAll(async () => {
+    requestJson = JSON.parse(await readFile(JAVA_JUNIT_INPUT_FILE, 'utf8'))
+    const {requestScript} = requestJson
+
+    await new JavaAppiumScriptGenerator({}).run({...requestJson, workingDir})
+    outputProject = path.join(
+      workingDir, requestScript.testingFramework, requestScript.name, 'manual')
+  })
+
+  afterAll(async () => {
+    await removeDir(workingDir)
+  })
+
+  /**
+   * Tests that every recorded step is written to steps.json with only the fields of its command.
+   */
+  it('should write the steps of the recording to steps.json', async () => {
+    const steps = JSON.parse(
+      await readFile(path.join(outputProject, 'src/test/resources/steps.json'), 'utf8'))
+
+    expect(steps).toEqual([
+      {id: 17000, command: 'TOUCH_ON_ELEMENT', timeout: 7129, x: 0.387, y: 0.43},
+      {id: 17001, command: 'SEND_KEYS', value: 'kobiton '},
+      {id: 17002, command: 'PRESS', value: 'ENTER', count: 1},
+      {
+        id: 17003, command: 'TOUCH_ON_ELEMENT', isWebContext: true, timeout: 8965, x: 0.359, y: 0.3
+      },
+      {id: 17004, command: 'ROTATE', orientation: 'LANDSCAPE'},
+      {id: 17005, command: 'ROTATE', orientation: 'PORTRAIT'},
+      {
+        id: 17006,
+        command: 'SWIPE_FROM_ELEMENT',
+        timeout: 13081,
+        x1: 0.506,
+        y1: 0.815,
+        x2: 0.574,
+        y2: 0.251,
+        duration: 637
+      },
+      {id: 17007, command: 'PRESS', value: 'BACK', count: 1}
+    ])
+  })
+
+  /**
+   * Tests that the steps with selectors get a `Locators` constant keyed by their step id.
+   */
+  it('should generate a locator constant for every step with selectors', async () => {
+    const locatorsCode = await readFile(path.join(
+      outputProject, 'src/test/java/com/kobiton/scriptlessautomation/Locators.java'), 'utf8')
+
+    expect(locatorsCode).not.toMatch(/{{\w+}}/)
+    expect(locatorsCode).toContain(
+      // eslint-disable-next-line max-len
+      'public static final Locator COMANDROIDCHROMEIDURL_BAR = new Locator(17000L, MobileBy.xpath("//*[@resource-id=\'com.android.chrome:id/url_bar\']"), MobileBy.className("android.widget.EditText"), MobileBy.xpath("//android.widget.EditText[@resource-id=\'com.android.chrome:id/url_bar\']"));')
+    expect(locatorsCode).toContain(
+      // eslint-disable-next-line max-len
+      'public static final Locator AHREFHTTPSKOBITONCOM = new Locator(17003L, MobileBy.cssSelector("a[href=\'https://kobiton.com/\']"));')
+    expect(locatorsCode).toContain(
+      // eslint-disable-next-line max-len
+      'public static final Locator WEB_VIEW1 = new Locator(17006L, MobileBy.xpath("(//android.webkit.WebView)[1]"));')
+    expect(locatorsCode).toContain(
+      // eslint-disable-next-line max-len
+      'private static final Map<Long, Locator> BY_ID = index(COMANDROIDCHROMEIDURL_BAR, AHREFHTTPSKOBITONCOM, WEB_VIEW1);')
+  })
+
+  /**
+   * Tests that the command of every supported step maps to a `StepTable.COMMANDS` constant,
+   * otherwise the project fails to load steps.json at runtime.
+   */
+  it('should map every supported command to a StepTable.COMMANDS constant', async () => {
+    const commands = await readStepTableCommands()
+    const actions = [
+      {command: 'activateApp', appPackage: 'com.android.chrome'},
+      {command: 'touchOnElement', x: '0.5', y: '0.5'},
+      {command: 'touchOnScrollableParent', elementInfo: {}, x: '0.5', y: '0.5'},
+      {command: 'touchAtPoint', x: '0.5', y: '0.5'},
+      {command: 'swipeFromElement', x1: '0.1', y1: '0.2', x2: '0.3', y2: '0.4', duration: '500'},
+      {command: 'swipeByPoints', x1: '0.1', y1: '0.2', x2: '0.3', y2: '0.4', duration: '500'},
+      {command: 'press', value: 'HOME'},
+      {command: 'sendKeys', value: 'kobiton'},
+      {command: 'sendKeysWithDDT', configurations: [{value: 'kobiton'}]},
+      {command: 'rotate', orientation: 'LANDSCAPE'},
+      {command: 'setLocation', lat: 10.7, long: 106.6},
+      {command: 'generateRandomPhoneNumber', length: '10'},
+      {command: 'findOtpPhoneNumber', countryCode: 'US'},
+      {command: 'findOtpEmailAddress'},
+      {command: 'findOtpCode'}
+    ]
+    const testSteps = actions.map((action, index) => ({
+      id: String(index + 1), context: 'NATIVE', actionJson: JSON.stringify(action)
+    }))
+
+    const {resourceFiles} = new JavaAppiumScriptGenerator({})._generateStepTable({testSteps})
+    const steps = JSON.parse(resourceFiles['steps.json'])
+
+    expect(steps.map(({command}) => command)).toEqual([
+      'ACTIVATE_APP', 'TOUCH_ON_ELEMENT', 'TOUCH_ON_SCROLLABLE_PARENT', 'TOUCH_AT_POINT',
+      'SWIPE_FROM_ELEMENT', 'SWIPE_BY_POINTS', 'PRESS', 'SEND_KEYS', 'SEND_KEYS_WITH_DDT', 'ROTATE',
+      'SET_LOCATION', 'GENERATE_RANDOM_PHONE_NUMBER', 'FIND_OTP_PHONE_NUMBER',
+      'FIND_OTP_EMAIL_ADDRESS', 'FIND_OTP_CODE'
+    ])
+    for (const {command} of steps) {
+      expect(commands).toContain(command)
+    }
+  })
+
+  /**
+   * Tests that up to 1000 locators stay in the `Locators` class itself.
+   */
+  it('should keep 1000 locators in the Locators class', () => {
+    const generator = new JavaAppiumScriptGenerator({})
+    const {locatorLines, locatorNames} = generator._generateStepTable({
+      testSteps: buildTouchSteps(1000)
+    })
+
+    expect(locatorNames).toHaveLength(1000)
+    expect(locatorNames[999]).toBe('APPIDFIELD1000')
+    expect(generator._buildJavaCode(locatorLines, 1)).not.toMatch(/class Part/)
+  })
+
+  /**
+   * Tests that more than 1000 locators are split into `Locators.Part<n>` classes of 1000 locators,
+   * a single class initializer would exceed the 64 KB method limit.
+   */
+  it('should split more than 1000 locators into Locators.Part classes', () => {
+    const generator = new JavaAppiumScriptGenerator({})
+    const {locatorLines, locatorNames} = generator._generateStepTable({
+      testSteps: buildTouchSteps(1001)
+    })
+    const locatorsCode = generator._buildJavaCode(locatorLines, 1)
+
+    expect(locatorNames).toHaveLength(1001)
+    expect(locatorNames[0]).toBe('Part1.APPIDFIELD1')
+    expect(locatorNames[999]).toBe('Part1.APPIDFIELD1000')
+    expect(locatorNames[1000]).toBe('Part2.APPIDFIELD1001')
+
+    const part1Code = locatorsCode.slice(0, locatorsCode.indexOf('public static class Part2'))
+    const part2Code = locatorsCode.slice(locatorsCode.indexOf('public static class Part2'))
+    expect(part1Code).toMatch(/^\s*public static class Part1 \{/)
+    expect(part1Code.match(/public static final Locator /g)).toHaveLength(1000)
+    expect(part2Code.match(/public static final Locator /g)).toHaveLength(1)
+    expect(part2Code).toContain(
+      // eslint-disable-next-line max-len
+      '    public static final Locator APPIDFIELD1001 = new Locator(1001L, MobileBy.xpath("//*[@resource-id=\'app:id/field_1001\']"));\n    }')
+    expect(locatorsCode.match(/\{/g)).toHaveLength(locatorsCode.match(/\}/g).length)
+  })
+
+  /**
+   * Tests that a step without a command is rejected as an unsupported command.
+   */
+  it('should reject a step without a command', () => {
+    const testSteps = [{id: '1', context: 'NATIVE', actionJson: JSON.stringify({value: 'kobiton'})}]
+
+    expect(() => new JavaAppiumScriptGenerator({})._generateStepTable({testSteps}))
+      .toThrow('Not support command = undefined')
+  })
+})
@@ -2,6 +2,8 @@ import BPromise from 'bluebird'
 import path from 'path'
 import {URL} from 'url'
 import get from 'lodash/get'
+import isEmpty from 'lodash/isEmpty'
+import mapValues from 'lodash/mapValues'
 import {FRAMEWORK_NAMES, DEVICE_SOURCES, CONTEXTS, LANGUAGES} from './constant'
 import {buildCode, Line} from '../models/line'
 import compress from '../utils/compress'
@@ -9,7 +11,11 @@ import {readFile, writeFile, createDir} from '../utils/fs-wrapper'
 import {BaseAppiumScriptGenerator} from './base'
 
 const LOCATOR_VAR_NAME_PREFIX = 'locator'
+// Locators per generated class, about 40 bytes each in the class initializer
+const MAX_LOCATORS_PER_CLASS = 1000
 const ncpAsync = BPromise.promisify(require('ncp').ncp)
+// Recorded coordinates and timeouts can come as strings, the step table keeps them as numbers
+const toNumbers = (values) => mapValues(values, Number)
 
 /**
  * Generates Java code for Appium scripts.
@@ -56,7 +62,9 @@ export default class JavaAppiumScriptGenerator extends BaseAppiumScriptGenerator
   }) {
     const {testingFramework} = requestScript
 
-    const {lines: testScriptLines, resourceFiles} = this._generateTestScriptLines({testSteps})
+    const {
+      locatorLines, locatorNames, resourceFiles, otpUsage
+    } = this._generateStepTable({testSteps})
     const deviceSource = get(devices, '[0].deviceSource', DEVICE_SOURCES.KOBITON)
 
     const desiredCapsMethodLines = this._generateDesiredCapabilitiesMethodLines({
@@ -69,6 +77,7 @@ export default class JavaAppiumScriptGenerator extends BaseAppiumScriptGenerator
 
     const outputFile = await this._packageProject({
       serverInfo,
+      devices,
       deviceSource,
       appUnderTest,
       isManualSession,
@@ -78,8 +87,10 @@ export default class JavaAppiumScriptGenerator extends BaseAppiumScriptGenerator
 
       desiredCapsMethodLines,
       testCaseLines,
-      testScriptLines,
+      locatorLines,
+      locatorNames,
       resourceFiles,
+      otpUsage,
 
       workingDir
     })
@@ -264,16 +275,32 @@ export default class JavaAppiumScriptGenerator extends BaseAppiumScriptGenerator
   }
 
   /**
-   * Generates an array of lines for a test script based on the provided test steps.
+   * Generates the step table run by `TestBase.runSteps()` and the `Locators` class of the steps.
    * @param {Object} options - The options object.
-   * @param {Array} options.testSteps - The array of test steps to generate the test
-   * script lines from.
-   * @returns {Object} An object containing the generated lines and resource files.
+   * @param {Array} options.testSteps - The array of test steps to generate the step table from.
+   * @returns {Object} An object containing the `Locators` class lines and constant names, resource
+   * files (the step table and element infos) and the OTP resources (phone number country codes,
+   * email address) used by the steps.
    */
-  _generateTestScriptLines({testSteps}) {
-    const lines = []
+  _generateStepTable({testSteps}) {
+    const tableSteps = []
+    const locatorLines = []
+    const locatorNames = []
     const resourceFiles = {}
+    const elementInfos = {}
+    const otpUsage = {countryCodes: new Set(), emailAddress: false}
     const locatorVarNames = new Set()
+    const locatorConstantNames = new Set()
+    // Large recordings keep their locators in nested classes, a single class initializer would
+    // exceed the 64 KB method limit
+    const usesLocatorParts = testSteps.filter(({actionJson, selectorConfigurations}) =>
+      actionJson && !isEmpty(selectorConfigurations)).length > MAX_LOCATORS_PER_CLASS
+    // Indent offset the next `Locators` line needs to close the indentation of the previous ones
+    let locatorIndentOffset = 0
+    const pushLocatorLine = (content, indentOffset = 0) => {
+      locatorLines.push(new Line(content, indentOffset + locatorIndentOffset))
+      locatorIndentOffset = 0
+    }
 
     for (const step of testSteps) {
       const {
@@ -293,173 +320,162 @@ export default class JavaAppiumScriptGenerator extends BaseAppiumScriptGenerator
       const actionCommand = get(action, 'command')
       const hasSelector = selectorConfigurations && selectorConfigurations.length
 
-      lines.push(new Line(''))
-      lines.push(new Line(`setCurrentCommandId(${step.id});`))
-
-      if (!context || context === CONTEXTS.NATIVE) {
-        lines.push(new Line('switchToNativeContext();'))
+      // Only the fields of the command are written, TestBase.runStep reads the others as defaults
+      const tableStep = {
+        id: Number(id),
+        // Unsupported or missing commands are rejected by the switch below
+        command: String(actionCommand || '').replace(/([a-z])([A-Z])/g, '$1_$2').toUpperCase()
       }
-      else {
-        lines.push(new Line('switchToWebContext();'))
+      if (context && context !== CONTEXTS.NATIVE) {
+        tableStep.isWebContext = true
       }
 
-      let locatorVarName, rawLocatorVarName
       if (hasSelector) {
-        locatorVarName = this._getLocatorVarName(step, locatorVarNames)
-        rawLocatorVarName = locatorVarName.replace(LOCATOR_VAR_NAME_PREFIX, '')
-        const locatorCode = this._getLocatorCode({step, locatorVarName})
-        lines.push(...locatorCode)
+        const locatorVarName = this._getLocatorVarName(step, locatorVarNames)
+        const rawLocatorVarName = locatorVarName.replace(LOCATOR_VAR_NAME_PREFIX, '')
+
+        // Locators are built once in the generated Locators class and found by step id
+        const locatorConstantName = this._getLocatorConstantName(
+          rawLocatorVarName, locatorConstantNames)
+        let locatorPart = ''
+        if (usesLocatorParts) {
+          const partIndex = Math.floor(locatorNames.length / MAX_LOCATORS_PER_CLASS) + 1
+          locatorPart = `Part${partIndex}.`
+          if (locatorNames.length % MAX_LOCATORS_PER_CLASS === 0) {
+            if (partIndex > 1) {
+              pushLocatorLine('}', -1)
+              pushLocatorLine('')
+            }
+
+            pushLocatorLine(`public static class Part${partIndex} {`)
+            locatorIndentOffset = 1
+          }
+        }
+
+        const locatorCode = this._getLocatorCode({step, locatorConstantName})
+        locatorCode.forEach(({content, indentOffset}) => pushLocatorLine(content, indentOffset))
+        locatorIndentOffset = -locatorCode.reduce((sum, {indentOffset}) => sum + indentOffset, 0)
+        locatorNames.push(`${locatorPart}${locatorConstantName}`)
       }
 
       switch (actionCommand) {
         case 'activateApp': {
           const {appPackage} = action
-          lines.push(new Line(`activateApp("${appPackage}");`))
+          Object.assign(tableStep, {appPackage})
         } break
 
         case 'touchOnElement': {
           const {x, y} = action
-          const elementVarName = `element${rawLocatorVarName}`
-          // eslint-disable-next-line max-len
-          lines.push(new Line(`MobileElement ${elementVarName} = findVisibleElement(${findingElementTimeout}, ${locatorVarName});`))
-          // eslint-disable-next-line max-len
-          lines.push(new Line(`touchOnElement(${elementVarName}, ${x}, ${y});`))
+          Object.assign(tableStep, toNumbers({timeout: findingElementTimeout, x, y}))
         } break
 
         case 'touchOnScrollableParent': {
           const {elementInfo, x, y} = action
-          resourceFiles[`${id}.json`] = JSON.stringify(elementInfo)
-
-          !isOnKeyboard && lines.push(new Line('hideKeyboard();'))
-          const elementVarName = `element${rawLocatorVarName}`
-          // eslint-disable-next-line max-len
-          lines.push(new Line(`MobileElement ${elementVarName} = findVisibleElementOnScrollable(${findingElementTimeout}, ${locatorVarName});`))
-          // eslint-disable-next-line max-len
-          lines.push(new Line(`touchOnElement(${elementVarName}, ${x}, ${y});`))
+          elementInfos[id] = elementInfo
+          Object.assign(tableStep, toNumbers({timeout: findingElementTimeout, x, y}))
+          if (isOnKeyboard) tableStep.isOnKeyboard = true
         } break
 
         case 'touchAtPoint': {
           const {x, y} = action
-          lines.push(new Line(`touchAtPoint(${x}, ${y});`))
+          Object.assign(tableStep, toNumbers({x, y}))
         } break
 
         case 'swipeFromElement': {
           const {x1, y1, x2, y2, duration} = action
-
-          !isOnKeyboard && lines.push(new Line('hideKeyboard();'))
-          const elementVarName = `element${rawLocatorVarName}`
-          // eslint-disable-next-line max-len
-          lines.push(new Line(`MobileElement ${elementVarName} = findVisibleElement(${findingElementTimeout}, ${locatorVarName});`))
-          // eslint-disable-next-line max-len
-          lines.push(new Line(`swipeOnElement(${elementVarName}, ${x1}, ${y1}, ${x2}, ${y2}, ${duration});`))
+          Object.assign(tableStep, toNumbers({
+            timeout: findingElementTimeout, x1, y1, x2, y2, duration
+          }))
+          if (isOnKeyboard) tableStep.isOnKeyboard = true
         } break
 
         case 'swipeByPoints': {
           const {x1, y1, x2, y2, duration} = action
-          lines.push(new Line(`swipeByPoint(${x1}, ${y1}, ${x2}, ${y2}, ${duration});`))
+          Object.assign(tableStep, toNumbers({x1, y1, x2, y2, duration}))
         } break
 
         case 'press': {
           const {value} = action
-          const count = action.count || 1
-          if (count === 1) {
-            lines.push(new Line(`press(PRESS_TYPES.${value});`))
-          }
-          else {
-            lines.push(new Line(`pressMultiple(PRESS_TYPES.${value}, ${count});`))
-          }
+          Object.assign(tableStep, {value, count: Number(action.count || 1)})
         } break
 
         case 'sendKeys': {
           const {value} = action
-          lines.push(new Line(`sendKeys(${this._getString(value)});`))
+          Object.assign(tableStep, {value})
         } break
 
         case 'sendKeysWithDDT': {
           const {configurations} = action
-          const keysVarName = `keys${rawLocatorVarName}`
-
-          if (configurations.length > 1) {
-            lines.push(new Line(`String ${keysVarName} = null;`))
-            configurations.forEach((configuration, index) => {
-              const {value, device} = configuration
-              const {deviceName, platformVersion} = device || {}
-              let ifStatement
-              if (!device || index === configurations.length - 1) {
-                ifStatement = 'else {'
-              }
-              else if (index === 0) {
-                // eslint-disable-next-line max-len
-                ifStatement = `if ("${deviceName}".equals(deviceName) && "${platformVersion}".equals(platformVersion)) {`
-              }
-              else {
-                // eslint-disable-next-line max-len
-                ifStatement = `else if ("${deviceName}".equals(deviceName) && "${platformVersion}".equals(platformVersion)) {`
-              }
-
-              lines.push(new Line(ifStatement))
-              lines.push(new Line(`${keysVarName} = ${this._getString(value)};`, 1))
-              lines.push(new Line('}', -1))
-            })
-          }
-          else if (configurations.length === 1) {
-            const {value} = configurations[0]
-            lines.push(new Line(`String ${keysVarName} = ${this._getString(value)};`))
+          if (isEmpty(configurations)) break
+
+          // Devices without their own value use the configuration recorded without a device
+          const defaultConfiguration = configurations.find(({device}) => !device) ||
+            configurations[configurations.length - 1]
+          tableStep.value = defaultConfiguration.value
+
+          const deviceConfigurations = configurations.filter(
+            (configuration) => configuration !== defaultConfiguration)
+          if (!isEmpty(deviceConfigurations)) {
+            tableStep.deviceValues = deviceConfigurations.map(({value, device}) => ({
+              deviceName: device.deviceName, platformVersion: device.platformVersion, value
+            }))
           }
-
-          lines.push(new Line(`sendKeys(${keysVarName});`))
         } break
 
         case 'rotate': {
           const {orientation} = action
-          lines.push(new Line(`rotateScreen(ScreenOrientation.${orientation});`))
+          Object.assign(tableStep, {orientation})
         } break
 
         case 'setLocation': {
           const {lat, long} = action
-          // eslint-disable-next-line max-len
-          lines.push(new Line(`setLocation(new Location((long)Double.parseDouble("${lat}"), (long)Double.parseDouble("${long}"), 0.0));`))
+          Object.assign(tableStep, {lat: String(lat), lon: String(long)})
         } break
 
         case 'generateRandomPhoneNumber': {
           const {length} = action
-          lines.push(new Line('clearTextField(12);'))
-          lines.push(new Line(`sendKeys(otpService.getRandomPhoneNumber(${length}));`))
+          Object.assign(tableStep, {length: Number(length)})
         } break
 
         case 'findOtpPhoneNumber': {
           const {countryCode} = action
-          lines.push(new Line(`otpService.findOtpPhoneNumber("${countryCode}");`))
-          lines.push(new Line('clearTextField(12);'))
-          lines.push(new Line('sendKeys(otpService.phoneNumber);'))
+          otpUsage.countryCodes.add(countryCode)
+          Object.assign(tableStep, {countryCode})
         } break
 
-        case 'findOtpEmailAddress': {
-          lines.push(new Line('otpService.findOtpEmailAddress();'))
-          lines.push(new Line('clearTextField(24);'))
-          lines.push(new Line('sendKeys(otpService.emailAddress);'))
+        case 'findOtpEmailAddress':
+          otpUsage.emailAddress = true
           break
-        }
 
-        case 'findOtpCode': {
-          lines.push(new Line('otpService.findOtpCode();'))
-          lines.push(new Line('clearTextField(8);'))
-          lines.push(new Line('sendKeys(otpService.otpCode);'))
+        case 'findOtpCode':
           break
-        }
 
         default:
           throw new Error(`Not support command = ${actionCommand}`)
       }
+
+      tableSteps.push(tableStep)
+    }
+
+    if (usesLocatorParts) {
+      pushLocatorLine('}', -1)
     }
 
-    return {lines, resourceFiles}
+    resourceFiles['steps.json'] = JSON.stringify(tableSteps)
+
+    // One index for all steps, loaded once per JVM by ElementInfoCatalog
+    if (!isEmpty(elementInfos)) {
+      resourceFiles['element-infos.json'] = JSON.stringify(elementInfos)
+    }
+
+    return {locatorLines, locatorNames, resourceFiles, otpUsage}
   }
 
   /**
    * Packages the project into a ZIP file and returns the path to the ZIP file.
    * @param {Object} options - The options object.
    * @param {Object} options.serverInfo - The server information object.
+   * @param {Array} options.devices - The array of devices to run the test on.
    * @param {string} options.deviceSource - The device source.
    * @param {Object} options.appUnderTest - The application under test object.
    * @param {boolean} options.isManualSession - Indicates whether the session is manual.
@@ -468,13 +484,16 @@ export default class JavaAppiumScriptGenerator extends BaseAppiumScriptGenerator
    * @param {Object} options.requestScript - The request script object.
    * @param {Array} options.desiredCapsMethodLines - The desired capabilities method lines.
    * @param {Array} options.testCaseLines - The test case lines.
-   * @param {Array} options.testScriptLines - The test script lines.
+   * @param {Array} options.locatorLines - The locator declaration lines of the `Locators` class.
+   * @param {Array} options.locatorNames - The locator constant names of the `Locators` class.
    * @param {Object} options.resourceFiles - The resource files object.
+   * @param {Object} options.otpUsage - The OTP resources used by the test steps.
    * @param {string} options.workingDir - The working directory.
    * @returns {string} The path to the ZIP file.
    */
   async _packageProject({
     serverInfo,
+    devices,
     deviceSource,
     appUnderTest,
     isManualSession,
@@ -484,8 +503,10 @@ export default class JavaAppiumScriptGenerator extends BaseAppiumScriptGenerator
 
     desiredCapsMethodLines,
     testCaseLines,
-    testScriptLines,
+    locatorLines,
+    locatorNames,
     resourceFiles,
+    otpUsage,
 
     workingDir
   }) {
@@ -514,7 +535,10 @@ export default class JavaAppiumScriptGenerator extends BaseAppiumScriptGenerator
       'utf8'
     )
     testAppCode = testAppCode.replace('{{testCases}}', this._buildJavaCode(testCaseLines, 1))
-    testAppCode = testAppCode.replace('{{testScript}}', this._buildJavaCode(testScriptLines, 3))
+
+    let locatorsCode = await readFile(path.join(templateScriptDir, 'Locators.java'), 'utf8')
+    locatorsCode = locatorsCode.replace('{{locators}}', this._buildJavaCode(locatorLines, 1).trim())
+    locatorsCode = locatorsCode.replace('{{locatorNames}}', locatorNames.join(', '))
 
     let testSuiteCode
     if (testingFramework === FRAMEWORK_NAMES.TESTNG) {
@@ -526,10 +550,34 @@ export default class JavaAppiumScriptGenerator extends BaseAppiumScriptGenerator
 
     const staticJavaFiles = [
       'Utils.java',
+      'Locator.java',
+      'StepTable.java',
       'ProxyServer.java',
       'OtpService.java',
+      'SharedResources.java',
+      'OtpResourcePool.java',
+      'ScreenGeometry.java',
+      'GestureBuilder.java',
+      'ScrollSearch.java',
+      'ElementInfoCatalog.java',
+      'Log.java',
+      'StepTelemetry.java',
+      'DebugArtifactCollector.java',
+      'RetryPolicy.java',
+      'ImplicitWaitManager.java',
+      'ElementPrefetcher.java',
+      'XPathIndex.java',
+      'SuiteRunner.java',
+      'SessionCapacityBenchmark.java',
+      'SimulatedAppiumServer.java',
       'TestBase.java'
     ]
+    // One device session per device by default, users can lower it to their plan's concurrency
+    const maxParallelSessions = Math.max(devices.length, 1)
+    // Enough pre-booked OTP resources for every parallel session, none when the steps use no OTP
+    const otpCountryCodes = [...get(otpUsage, 'countryCodes', [])]
+    const usesOtp = otpCountryCodes.length > 0 || get(otpUsage, 'emailAddress', false)
+    const otpPoolSize = usesOtp ? maxParallelSessions : 0
 
     let configCode, appiumServerUrl
     configCode = await readFile(path.join(templateScriptDir, 'Config.java'), 'utf8')
@@ -572,19 +620,30 @@ export default class JavaAppiumScriptGenerator extends BaseAppiumScriptGenerator
       '{{desiredCaps}}', this._buildJavaCode(desiredCapsMethodLines, 1))
     configCode = configCode.replace('{{appiumServerUrl}}', appiumServerUrl)
     configCode = configCode.replace('{{deviceSource}}', deviceSource)
+    configCode = configCode.replace('{{maxParallelSessions}}', maxParallelSessions)
+    configCode = configCode.replace('{{otpPoolSize}}', otpPoolSize)
+    configCode = configCode.replace('{{otpPoolCountryCodes}}',
+      `new String[]{${otpCountryCodes.map((countryCode) => `"${countryCode}"`).join(', ')}}`)
+    configCode = configCode.replace(
+      '{{otpPoolEmailAddresses}}', get(otpUsage, 'emailAddress', false))
 
     let readmeText = await readFile(path.join(templateScriptDir, 'README.md'), 'utf8')
     readmeText = readmeText.replace(/{{portalUrl}}/g, serverInfo.portalUrl)
     readmeText = readmeText.replace('{{manualSessionId}}', manualSessionId)
 
+    let pomXml = await readFile(path.join(templateScriptDir, testingFramework, 'pom.xml'), 'utf8')
+    pomXml = pomXml.replace('{{threadCount}}', maxParallelSessions)
+    await writeFile(path.join(outputProject, 'pom.xml'), pomXml, 'utf8')
+
+    // Optional JMH module compiled against src/test/java, see README.md
     await ncpAsync(
-      path.join(templateScriptDir, testingFramework, 'pom.xml'),
-      path.join(outputProject, 'pom.xml'))
+      path.join(templateScriptDir, 'benchmarks'),
+      path.join(outputProject, 'benchmarks'))
 
     if (testingFramework === FRAMEWORK_NAMES.TESTNG) {
-      await ncpAsync(
-        path.join(templateScriptDir, testingFramework, 'testng.xml'),
-        path.join(outputProject, 'testng.xml'))
+      let testngXml = await readFile(path.join(templateScriptDir, 'testng/testng.xml'), 'utf8')
+      testngXml = testngXml.replace('{{threadCount}}', maxParallelSessions)
+      await writeFile(path.join(outputProject, 'testng.xml'), testngXml, 'utf8')
     }
 
     await BPromise.each(staticJavaFiles, (fileName) =>
@@ -603,6 +662,7 @@ export default class JavaAppiumScriptGenerator extends BaseAppiumScriptGenerator
 
     await writeFile(path.join(outputProjectSrc, 'Config.java'), configCode, 'utf8')
     await writeFile(path.join(outputProjectSrc, 'TestApp.java'), testAppCode, 'utf8')
+    await writeFile(path.join(outputProjectSrc, 'Locators.java'), locatorsCode, 'utf8')
     await writeFile(path.join(outputProject, 'README.md'), readmeText, 'utf8')
     await ncpAsync(
       path.join(templateScriptDir, '../resources/execute-script-on-web-element.js'),
@@ -618,14 +678,15 @@ export default class JavaAppiumScriptGenerator extends BaseAppiumScriptGenerator
   }
 
   /**
-   * Gets the locator code for a step.
+   * Gets the declaration of the `Locators` constant of a step: the default locators and the
+   * device specific variants.
    * @param {Object} options - The options object.
    * @param {Object} options.step - The step object.
-   * @param {string} options.locatorVarName - The name of the locator variable.
-   * @returns {Array} An array of `Line` objects representing the locator code for the step.
+   * @param {string} options.locatorConstantName - The name of the locator constant.
+   * @returns {Array} An array of `Line` objects representing the locator declaration.
    */
-  _getLocatorCode({step, locatorVarName}) {
-    const {selectorConfigurations} = step
+  _getLocatorCode({step, locatorConstantName}) {
+    const {id, selectorConfigurations} = step
     const getLocatorStatement = ({selector}) => {
       let body
 
@@ -660,38 +721,57 @@ export default class JavaAppiumScriptGenerator extends BaseAppiumScriptGenerator
       return 'MobileBy.' + body + suffix
     }
 
+    const getLocatorsStatement = (selectors) =>
+      selectors.map((selector) => getLocatorStatement({selector})).join(', ')
+
+    // Devices without their own selectors use the configuration recorded without a device
+    const defaultConfiguration = selectorConfigurations.find(({device}) => !device) ||
+      selectorConfigurations[selectorConfigurations.length - 1]
+    const deviceConfigurations = selectorConfigurations.filter(
+      (selectorConfiguration) => selectorConfiguration !== defaultConfiguration)
+
     const lines = []
-    if (selectorConfigurations.length > 1) {
-      lines.push(new Line(`By[] ${locatorVarName};`))
-      selectorConfigurations.forEach((selectorConfiguration, index) => {
-        const {selectors, device} = selectorConfiguration
-        const {deviceName, platformVersion} = device || {}
-        let ifStatement
-        if (!device || index === selectorConfigurations.length - 1) {
-          ifStatement = 'else {'
-        }
-        else if (index === 0) {
-          // eslint-disable-next-line max-len
-          ifStatement = `if ("${deviceName}".equals(deviceName) && "${platformVersion}".equals(platformVersion)) {`
-        }
-        else {
-          // eslint-disable-next-line max-len
-          ifStatement = `else if ("${deviceName}".equals(deviceName) && "${platformVersion}".equals(platformVersion)) {`
-        }
+    const declaration = `public static final Locator ${locatorConstantName} = ` +
+      `new Locator(${id}L, ${getLocatorsStatement(defaultConfiguration.selectors)})`
+    if (isEmpty(deviceConfigurations)) {
+      lines.push(new Line(`${declaration};`))
+      return lines
+    }
 
-        const locatorsStatements = selectors.map((selector) => getLocatorStatement({selector}))
-        lines.push(new Line(ifStatement))
-        lines.push(new Line(`${locatorVarName} = new By[] {${locatorsStatements.join(', ')}};`, 1))
-        lines.push(new Line('}', -1))
-      })
+    lines.push(new Line(declaration))
+    deviceConfigurations.forEach(({selectors, device}, index) => {
+      const {deviceName, platformVersion} = device
+      const end = index === deviceConfigurations.length - 1 ? ';' : ''
+      const locatorsStatement = getLocatorsStatement(selectors)
+      lines.push(new Line(
+        `.forDevice("${deviceName}", "${platformVersion}", ${locatorsStatement})${end}`,
+        index === 0 ? 1 : 0))
+    })
+
+    return lines
+  }
+
+  /**
+   * Gets a unique upper snake case name of a `Locators` constant.
+   * @param {string} name - The camel case name of the locator.
+   * @param {Set} constantNames - The constant names already used.
+   * @returns {string} The constant name.
+   */
+  _getLocatorConstantName(name, constantNames) {
+    let constantName = name.replace(/([a-z0-9])([A-Z])/g, '$1_$2').toUpperCase()
+    if (!/^[A-Z]/.test(constantName)) {
+      constantName = `LOCATOR_${constantName}`
     }
-    else if (selectorConfigurations.length === 1) {
-      const {selectors} = selectorConfigurations[0]
-      const locatorsStatements = selectors.map((selector) => getLocatorStatement({selector}))
-      lines.push(new Line(`By[] ${locatorVarName} = new By[] {${locatorsStatements.join(', ')}};`))
+
+    let nth = 1
+    let tempConstantName = constantName
+    while (constantNames.has(tempConstantName)) {
+      tempConstantName = `${constantName}_${nth}`
+      nth++
     }
 
-    return lines
+    constantNames.add(tempConstantName)
+    return tempConstantName
   }
 
   /**
@@ -8,17 +8,40 @@ import java.net.URL;
 
 public class Config {
     enum DEVICE_SOURCE_ENUMS {KOBITON, OTHER}
+    enum TYPING_MODES {NATURAL, FAST}
 
     public static final String API_USERNAME = "{{username}}";
     public static final String API_KEY = "{{your_api_key}}";
-    public static final String APPIUM_SERVER_URL = {{appiumServerUrl}};
+    // -Dkobiton.appiumServerUrl and -Dkobiton.apiUrl run the tests against another server, e.g. SimulatedAppiumServer
+    public static final String APPIUM_SERVER_URL = System.getProperty("kobiton.appiumServerUrl", {{appiumServerUrl}});
     public static final DEVICE_SOURCE_ENUMS DEVICE_SOURCE = DEVICE_SOURCE_ENUMS.{{deviceSource}};
     public static final int IMPLICIT_WAIT_IN_MS = 10000;
     public static final int DEVICE_WAITING_MAX_TRY_TIMES = 5;
     public static final int DEVICE_WAITING_INTERVAL_IN_MS = 30000;
     public static final int SEND_KEYS_DELAY_IN_MS = 1500;
+    // NATURAL types key by key like a user, FAST sends the whole text to the focused field in one call
+    public static final TYPING_MODES TYPING_MODE = TYPING_MODES.valueOf(System.getProperty("kobiton.typingMode", "NATURAL"));
+    public static final int TYPING_CHUNK_SIZE = 64;
+    public static final int SEND_KEYS_SETTLE_IN_MS = 300;
     public static final int IDLE_DELAY_IN_MS = 3000;
-    public static final String KOBITON_API_URL = "{{kobiton_api_url}}";
+    // Look up the element of the next step during the idle delay after an action
+    public static final boolean PREFETCH_ENABLED = Boolean.parseBoolean(System.getProperty("kobiton.prefetch", "true"));
+    // Drag used to scroll (no accelerate), a shorter drag should hold the finger still before release so the content
+    // does not fling
+    public static final int DRAG_DURATION_IN_MS = Integer.getInteger("kobiton.dragDurationInMs", 5000);
+    public static final int DRAG_STEPS = Integer.getInteger("kobiton.dragSteps", 20);
+    public static final int DRAG_HOLD_IN_MS = Integer.getInteger("kobiton.dragHoldInMs", 0);
+    public static final int GESTURE_BATCH_PAUSE_IN_MS = 300;
+    // Keep source & screenshot at the start of the last N steps and save them with the failure, 0 to disable
+    public static final int DEBUG_SNAPSHOT_STEPS = Integer.getInteger("kobiton.debugSnapshotSteps", 0);
+    public static final int MAX_PARALLEL_SESSIONS = {{maxParallelSessions}};
+    // OTP phone numbers (per country code) and email addresses booked at suite start and shared by tests, 0 to book per test
+    public static final int OTP_POOL_SIZE = {{otpPoolSize}};
+    public static final String[] OTP_POOL_COUNTRY_CODES = {{otpPoolCountryCodes}};
+    public static final boolean OTP_POOL_EMAIL_ADDRESSES = {{otpPoolEmailAddresses}};
+    // Run tests, proxy requests and their blocking waits on virtual threads (Java 21+), see README.md
+    public static final boolean USE_VIRTUAL_THREADS = Boolean.getBoolean("kobiton.virtualThreads");
+    public static final String KOBITON_API_URL = System.getProperty("kobiton.apiUrl", "{{kobiton_api_url}}");
     {{kobitonCredential}}
 
     public static String getAppiumServerUrlWithAuth() throws MalformedURLException {
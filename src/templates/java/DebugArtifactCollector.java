@@ -0,0 +1,137 @@
+package com.kobiton.scriptlessautomation;
+
+import io.appium.java_client.AppiumDriver;
+import org.apache.commons.io.FileUtils;
+import org.openqa.selenium.OutputType;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Collects page source and screenshot of a failed test into debug/<device>/<session>/command-<id>, so parallel tests
+ * on the same device model keep their own artifacts. Both are fetched on the test thread, the driver is not thread
+ * safe and the session takes one command at a time, only the gzip and file writes run in the background.
+ * With -Dkobiton.debugSnapshotSteps=N the state at the start of the last N steps is kept in memory and saved under
+ * the steps directory of the failure.
+ */
+public class DebugArtifactCollector {
+    public static final String DEBUG_DIR = "debug";
+    private static final int WRITE_TIMEOUT_IN_MS = 30000;
+
+    private static final ExecutorService executor = Utils.newExecutor("debug-artifacts");
+    private static final Set<CompletableFuture<Void>> pendingWrites = ConcurrentHashMap.newKeySet();
+
+    static {
+        // Executor threads are daemons, let the writes finish before the JVM exits
+        Runtime.getRuntime().addShutdownHook(new Thread(DebugArtifactCollector::awaitWrites, "debug-artifacts-flush"));
+    }
+
+    private final File deviceDir;
+    private final long startedAt = System.currentTimeMillis();
+    private final Deque<Snapshot> recentSnapshots = new ArrayDeque<>();
+
+    public DebugArtifactCollector(String deviceName, String platformVersion) {
+        String deviceDirName = String.format("%s %s", deviceName, platformVersion).replaceAll("[^a-zA-Z0-9]", "_");
+        this.deviceDir = new File(new File(System.getProperty("user.dir"), DEBUG_DIR), deviceDirName);
+    }
+
+    /**
+     * Keep the state at the start of a step in the rolling buffer, no-op unless Config.DEBUG_SNAPSHOT_STEPS is set
+     */
+    public synchronized void recordStep(AppiumDriver<?> driver, long commandId) {
+        if (Config.DEBUG_SNAPSHOT_STEPS <= 0) return;
+
+        recentSnapshots.addLast(fetch(driver, commandId));
+        while (recentSnapshots.size() > Config.DEBUG_SNAPSHOT_STEPS) {
+            recentSnapshots.removeFirst();
+        }
+    }
+
+    /**
+     * Fetch the failure state and return once it is fetched, the files are written in the background
+     * @return the directory the artifacts are written to
+     */
+    public synchronized File captureFailure(AppiumDriver<?> driver, long sessionId, long commandId) {
+        File sessionDir = new File(deviceDir, sessionId > 0 ? "session-" + sessionId : "local-" + startedAt);
+        File failureDir = new File(sessionDir, "command-" + commandId);
+        Log.info("Save source & screenshot for debugging at {}", failureDir.getAbsolutePath());
+
+        Snapshot failure = fetch(driver, commandId);
+        List<Snapshot> previousSteps = new ArrayList<>(recentSnapshots);
+        recentSnapshots.clear();
+
+        CompletableFuture<Void> write = CompletableFuture.runAsync(() -> {
+            write(failure, failureDir);
+            for (Snapshot stepSnapshot : previousSteps) {
+                write(stepSnapshot, new File(failureDir, "steps/command-" + stepSnapshot.commandId));
+            }
+        }, executor);
+
+        pendingWrites.add(write);
+        write.whenComplete((result, error) -> pendingWrites.remove(write));
+        return failureDir;
+    }
+
+    public static void awaitWrites() {
+        if (pendingWrites.isEmpty()) return;
+
+        try {
+            CompletableFuture.allOf(pendingWrites.toArray(new CompletableFuture<?>[0])).get(WRITE_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            Log.warn("Cannot save all debug resources, error: {}", e.getMessage());
+        }
+    }
+
+    private static Snapshot fetch(AppiumDriver<?> driver, long commandId) {
+        String source = fetchQuietly(driver::getPageSource, "source");
+        byte[] screenshot = fetchQuietly(() -> driver.getScreenshotAs(OutputType.BYTES), "screenshot");
+        return new Snapshot(commandId, source, screenshot);
+    }
+
+    private static <T> T fetchQuietly(Callable<T> fetcher, String name) {
+        try {
+            return fetcher.call();
+        } catch (Exception e) {
+            Log.warn("Cannot fetch {} for debugging, error: {}", name, e.getMessage());
+            return null;
+        }
+    }
+
+    private static void write(Snapshot snapshot, File dir) {
+        try {
+            FileUtils.forceMkdir(dir);
+            if (snapshot.source != null) {
+                try (Writer writer = new OutputStreamWriter(
+                    new GZIPOutputStream(new FileOutputStream(new File(dir, "source.xml.gz"))), StandardCharsets.UTF_8)) {
+                    writer.write(snapshot.source);
+                }
+            }
+
+            // PNG is already compressed
+            if (snapshot.screenshot != null) {
+                FileUtils.writeByteArrayToFile(new File(dir, "screenshot.png"), snapshot.screenshot);
+            }
+        } catch (Exception e) {
+            Log.warn("Cannot save debug resources at {}", dir.getAbsolutePath(), e);
+        }
+    }
+
+    private static class Snapshot {
+        final long commandId;
+        final String source;
+        final byte[] screenshot;
+
+        Snapshot(long commandId, String source, byte[] screenshot) {
+            this.commandId = commandId;
+            this.source = source;
+            this.screenshot = screenshot;
+        }
+    }
+}
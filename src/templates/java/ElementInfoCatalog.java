@@ -0,0 +1,78 @@
+package com.kobiton.scriptlessautomation;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Element infos of all steps (e.g. the scrollable parent XPath), keyed by command id.
+ * The index resource is streamed once per JVM on first use.
+ */
+public class ElementInfoCatalog {
+    public static final String RESOURCE_NAME = "element-infos.json";
+
+    private static class Holder {
+        static final Map<Long, Map<String, String>> infos = load();
+    }
+
+    public static Map<String, String> get(long commandId) throws Exception {
+        Map<String, String> info = Holder.infos.get(commandId);
+        if (info == null) {
+            throw new Exception(String.format("Cannot find element info of command %s", commandId));
+        }
+
+        return info;
+    }
+
+    private static Map<Long, Map<String, String>> load() {
+        Map<Long, Map<String, String>> infos = new HashMap<>();
+        InputStream inputStream = ElementInfoCatalog.class.getClassLoader().getResourceAsStream(RESOURCE_NAME);
+        if (inputStream == null) return infos;
+
+        try (JsonReader reader = new JsonReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                long commandId = Long.parseLong(reader.nextName());
+                infos.put(commandId, Collections.unmodifiableMap(readInfo(reader)));
+            }
+            reader.endObject();
+        } catch (Exception e) {
+            Log.warn("Cannot load {}, error: {}", RESOURCE_NAME, e.getMessage());
+        }
+
+        return infos;
+    }
+
+    private static Map<String, String> readInfo(JsonReader reader) throws Exception {
+        Map<String, String> info = new HashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            JsonToken token = reader.peek();
+            switch (token) {
+                case STRING:
+                case NUMBER:
+                    info.put(name, reader.nextString());
+                    break;
+                case BOOLEAN:
+                    info.put(name, String.valueOf(reader.nextBoolean()));
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    info.put(name, null);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        return info;
+    }
+}
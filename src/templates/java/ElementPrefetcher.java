@@ -0,0 +1,99 @@
+package com.kobiton.scriptlessautomation;
+
+import io.appium.java_client.MobileElement;
+import org.openqa.selenium.Rectangle;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Looks up the element of the next step while the current action settles, e.g. during the idle delay after a press.
+ * The lookup runs on a background thread only while the test thread sleeps and is awaited before the test sends
+ * any other command, so the session never gets two commands at once. At the start of its step the element is used
+ * only if it still has the rect it had when found, otherwise the step looks it up again as usual.
+ */
+public class ElementPrefetcher {
+    private static final ExecutorService executor = Utils.newExecutor("element-prefetch");
+
+    private CompletableFuture<Prefetched> pending;
+    private Prefetched prefetched;
+    private long hitCount, discardCount, failureCount;
+
+    interface Lookup {
+        MobileElement find() throws Exception;
+    }
+
+    private static class Prefetched {
+        final long stepId;
+        final MobileElement element;
+        final Rectangle rect;
+
+        Prefetched(long stepId, MobileElement element, Rectangle rect) {
+            this.stepId = stepId;
+            this.element = element;
+            this.rect = rect;
+        }
+    }
+
+    public void start(long stepId, Lookup lookup) {
+        prefetched = null;
+        // Pool threads serve every session, they log with the device and session of the caller
+        Map<String, String> logContext = Log.getContext();
+        logContext.put("command", String.valueOf(stepId));
+        pending = CompletableFuture.supplyAsync(() -> {
+            Log.setContext(logContext);
+            try {
+                MobileElement element = lookup.find();
+                return new Prefetched(stepId, element, element.getRect());
+            } catch (Exception e) {
+                Log.debug("Cannot prefetch element of step {}, error: {}", stepId, e.getMessage());
+                return null;
+            } finally {
+                Log.clearContext();
+            }
+        }, executor);
+    }
+
+    /**
+     * Wait for the running lookup, must be called before the test sends its next command
+     */
+    public void await() {
+        if (pending == null) return;
+
+        try {
+            prefetched = pending.join();
+            if (prefetched == null) failureCount++;
+        } finally {
+            pending = null;
+        }
+    }
+
+    /**
+     * The element prefetched for the step if it did not move since, null when it has to be looked up
+     */
+    public MobileElement take(long stepId) {
+        Prefetched candidate = prefetched;
+        prefetched = null;
+        if (candidate == null || candidate.stepId != stepId) return null;
+
+        try {
+            if (candidate.rect.equals(candidate.element.getRect())) {
+                Log.debug("Use prefetched element of step {}", stepId);
+                hitCount++;
+                return candidate.element;
+            }
+        } catch (Exception ignored) {
+            // Stale, the screen changed after the lookup
+        }
+
+        Log.debug("Discard prefetched element of step {}, the screen changed", stepId);
+        discardCount++;
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("prefetched elements used: %s, discarded: %s, not found: %s", hitCount, discardCount, failureCount);
+    }
+}
@@ -0,0 +1,113 @@
+package com.kobiton.scriptlessautomation;
+
+import io.appium.java_client.AppiumDriver;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.interactions.Pause;
+import org.openqa.selenium.interactions.PointerInput;
+import org.openqa.selenium.interactions.Sequence;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Builds W3C touch action sequences from cached move templates.
+ * Several gestures can be chained on one builder and sent with a single perform call.
+ */
+public class GestureBuilder {
+    // Slow, precise move (no accelerate) with the configured duration and step count
+    private static final Template DRAG_TEMPLATE = new Template(Config.DRAG_DURATION_IN_MS, Config.DRAG_STEPS, Config.DRAG_HOLD_IN_MS);
+    // Fling templates by duration in ms, swipe steps use a few recorded durations
+    private static final ConcurrentHashMap<Integer, Template> FLING_TEMPLATES = new ConcurrentHashMap<>();
+
+    private final PointerInput finger = new PointerInput(PointerInput.Kind.TOUCH, "finger");
+    private final Sequence sequence = new Sequence(finger, 0);
+    private int gestureCount = 0;
+
+    /**
+     * Move template with evenly interpolated steps, holding the finger still before release prevents flinging.
+     * Not cached, keep the template to reuse it.
+     */
+    public static Template getTemplate(int durationInMs, int steps, int holdInMs) {
+        return new Template(durationInMs, steps, holdInMs);
+    }
+
+    /**
+     * Quick single-step move released at full speed, the content keeps scrolling after release
+     */
+    public static Template getFlingTemplate(int durationInMs) {
+        return FLING_TEMPLATES.computeIfAbsent(durationInMs, k -> new Template(durationInMs, 1, 0));
+    }
+
+    public static Template getDragTemplate() {
+        return DRAG_TEMPLATE;
+    }
+
+    public GestureBuilder tap(Point point) {
+        pauseBetweenGestures();
+        sequence.addAction(finger.createPointerMove(Duration.ofMillis(0), PointerInput.Origin.viewport(), point.x, point.y));
+        sequence.addAction(finger.createPointerDown(PointerInput.MouseButton.LEFT.asArg()));
+        sequence.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
+        return this;
+    }
+
+    public GestureBuilder move(Point fromPoint, Point toPoint, Template template) {
+        pauseBetweenGestures();
+        sequence.addAction(finger.createPointerMove(Duration.ofMillis(0), PointerInput.Origin.viewport(), fromPoint.x, fromPoint.y));
+        sequence.addAction(finger.createPointerDown(PointerInput.MouseButton.LEFT.asArg()));
+
+        int deltaX = toPoint.x - fromPoint.x;
+        int deltaY = toPoint.y - fromPoint.y;
+        for (int i = 0; i < template.steps; i++) {
+            int nextX = fromPoint.x + (int) (deltaX * template.fractions[i]);
+            int nextY = fromPoint.y + (int) (deltaY * template.fractions[i]);
+            sequence.addAction(finger.createPointerMove(template.stepDurations[i], PointerInput.Origin.viewport(), nextX, nextY));
+        }
+
+        if (template.hold != null) {
+            sequence.addAction(new Pause(finger, template.hold));
+        }
+
+        sequence.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
+        return this;
+    }
+
+    public Sequence build() {
+        return sequence;
+    }
+
+    public Sequence perform(AppiumDriver<?> driver) {
+        driver.perform(Arrays.asList(sequence));
+        return sequence;
+    }
+
+    private void pauseBetweenGestures() {
+        // Let the UI register the previous gesture as finished before the next one starts
+        if (gestureCount++ > 0) {
+            sequence.addAction(new Pause(finger, Duration.ofMillis(Config.GESTURE_BATCH_PAUSE_IN_MS)));
+        }
+    }
+
+    /**
+     * Step fractions and durations of a move, independent of the start and end points
+     */
+    public static class Template {
+        public final int steps;
+        final double[] fractions;
+        final Duration[] stepDurations;
+        final Duration hold;
+
+        Template(int durationInMs, int steps, int holdInMs) {
+            this.steps = Math.max(steps, 1);
+            this.fractions = new double[this.steps];
+            this.stepDurations = new Duration[this.steps];
+            this.hold = holdInMs > 0 ? Duration.ofMillis(holdInMs) : null;
+
+            Duration stepDuration = Duration.ofMillis(durationInMs / this.steps);
+            for (int i = 0; i < this.steps; i++) {
+                fractions[i] = (i + 1) / (double) this.steps;
+                stepDurations[i] = stepDuration;
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.kobiton.scriptlessautomation;
+
+import org.openqa.selenium.WebDriver;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the implicit wait of the session on the client, so a timeouts command is only sent when the value changes.
+ * The value is forgotten on context or window switches since a web context can keep its own timeouts.
+ */
+public class ImplicitWaitManager {
+    private static final int UNKNOWN = -1;
+
+    private final WebDriver driver;
+    private int currentInMs = UNKNOWN;
+    private long sentCount, skippedCount;
+
+    public ImplicitWaitManager(WebDriver driver) {
+        this.driver = driver;
+    }
+
+    public void set(int valueInMs) {
+        if (valueInMs == currentInMs) {
+            skippedCount++;
+            return;
+        }
+
+        // Forget the value first, it is unknown if the command fails
+        currentInMs = UNKNOWN;
+        driver.manage().timeouts().implicitlyWait(valueInMs, TimeUnit.MILLISECONDS);
+        currentInMs = valueInMs;
+        sentCount++;
+    }
+
+    /**
+     * The implicit wait in effect, -1 when unknown
+     */
+    public int getCurrent() {
+        return currentInMs;
+    }
+
+    public void reset() {
+        currentInMs = UNKNOWN;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("implicit wait commands sent: %s, skipped: %s", sentCount, skippedCount);
+    }
+}
@@ -0,0 +1,67 @@
+package com.kobiton.scriptlessautomation;
+
+import org.openqa.selenium.By;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Locators of one element, tried in order, with their device specific variants. The generated ones are built once
+ * per JVM in Locators and keyed by the id of the step they belong to, so lookups and caches can key on the id
+ * instead of the locator strings.
+ */
+public class Locator {
+    // Id of locators built on the fly instead of for a step
+    public static final long NO_STEP_ID = 0;
+
+    public final long id;
+    public final By[] locators;
+    private final Map<String, Locator> deviceVariants = new HashMap<>();
+    private volatile String text;
+
+    public Locator(long id, By... locators) {
+        this.id = id;
+        this.locators = locators;
+    }
+
+    public static Locator of(By... locators) {
+        return new Locator(NO_STEP_ID, locators);
+    }
+
+    /**
+     * Use other locators on a device, the first variant added for a device wins.
+     * Only meant to be called while building the locator
+     */
+    public Locator forDevice(String deviceName, String platformVersion, By... locators) {
+        deviceVariants.putIfAbsent(getDeviceKey(deviceName, platformVersion), new Locator(id, locators));
+        return this;
+    }
+
+    /**
+     * The variant of the device, this locator when the device has none
+     */
+    public Locator resolve(String deviceName, String platformVersion) {
+        if (deviceVariants.isEmpty()) return this;
+        return deviceVariants.getOrDefault(getDeviceKey(deviceName, platformVersion), this);
+    }
+
+    /**
+     * Display text of the locators, built on first use and kept
+     */
+    public String getText() {
+        if (text == null) {
+            text = Utils.getLocatorText(locators);
+        }
+
+        return text;
+    }
+
+    private static String getDeviceKey(String deviceName, String platformVersion) {
+        return deviceName + " " + platformVersion;
+    }
+
+    @Override
+    public String toString() {
+        return getText();
+    }
+}
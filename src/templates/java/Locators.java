@@ -0,0 +1,32 @@
+package com.kobiton.scriptlessautomation;
+
+import io.appium.java_client.MobileBy;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Locators of the recorded steps, generated. Each one is keyed by the id of its step.
+ */
+public class Locators {
+    {{locators}}
+
+    private static final Map<Long, Locator> BY_ID = index({{locatorNames}});
+
+    /**
+     * Locator of a step, null when the step has no element
+     */
+    public static Locator get(long stepId) {
+        return BY_ID.get(stepId);
+    }
+
+    private static Map<Long, Locator> index(Locator... locators) {
+        Map<Long, Locator> byId = new HashMap<>();
+        for (Locator locator : locators) {
+            byId.put(locator.id, locator);
+        }
+
+        return Collections.unmodifiableMap(byId);
+    }
+}
@@ -0,0 +1,194 @@
+package com.kobiton.scriptlessautomation;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small logging facade: "{}" placeholders formatted only when the level is enabled, a per-thread context
+ * (device, session, command) prefixed to every line, and a background writer so tests do not contend on stdout.
+ *
+ * Options: -Dkobiton.logLevel=DEBUG|INFO|WARN|ERROR|OFF (INFO hides step chatter), -Dkobiton.logAsync=false
+ */
+public class Log {
+    enum LEVELS {DEBUG, INFO, WARN, ERROR, OFF}
+
+    public static final LEVELS LEVEL = LEVELS.valueOf(System.getProperty("kobiton.logLevel", "DEBUG").toUpperCase());
+    public static final boolean ASYNC = Boolean.parseBoolean(System.getProperty("kobiton.logAsync", "true"));
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final ThreadLocal<Map<String, String>> context = ThreadLocal.withInitial(LinkedHashMap::new);
+    private static final ThreadLocal<SimpleDateFormat> timeFormat = ThreadLocal.withInitial(() -> new SimpleDateFormat("HH:mm:ss.SSS"));
+    private static final BlockingQueue<String> buffer = new ArrayBlockingQueue<>(BUFFER_SIZE);
+    private static final AtomicInteger pendingLines = new AtomicInteger();
+    private static Thread writer;
+
+    static {
+        if (ASYNC) {
+            writer = Utils.newThread("log-writer", Log::write, false);
+            writer.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+        }
+    }
+
+    public static boolean isDebugEnabled() {
+        return isEnabled(LEVELS.DEBUG);
+    }
+
+    public static boolean isEnabled(LEVELS level) {
+        return level != LEVELS.OFF && level.ordinal() >= LEVEL.ordinal();
+    }
+
+    public static void debug(String message, Object... args) {
+        log(LEVELS.DEBUG, message, args);
+    }
+
+    public static void info(String message, Object... args) {
+        log(LEVELS.INFO, message, args);
+    }
+
+    public static void warn(String message, Object... args) {
+        log(LEVELS.WARN, message, args);
+    }
+
+    public static void error(String message, Object... args) {
+        log(LEVELS.ERROR, message, args);
+    }
+
+    /**
+     * Add a key (e.g. device, session, command) to the context of the current thread
+     */
+    public static void putContext(String key, Object value) {
+        if (value == null) {
+            context.get().remove(key);
+        } else {
+            context.get().put(key, String.valueOf(value));
+        }
+    }
+
+    public static void clearContext() {
+        context.remove();
+    }
+
+    /**
+     * Copy of the context of the current thread, to log from another thread on its behalf with setContext
+     */
+    public static Map<String, String> getContext() {
+        return new LinkedHashMap<>(context.get());
+    }
+
+    public static void setContext(Map<String, String> values) {
+        context.set(new LinkedHashMap<>(values));
+    }
+
+    /**
+     * Wait until buffered lines are written
+     */
+    public static void flush() {
+        if (writer == null) return;
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pendingLines.get() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private static void log(LEVELS level, String message, Object... args) {
+        if (!isEnabled(level)) return;
+
+        StringBuilder line = new StringBuilder(message.length() + 64);
+        line.append(timeFormat.get().format(new Date())).append(' ').append(level).append(' ');
+        for (Map.Entry<String, String> entry : context.get().entrySet()) {
+            line.append('[').append(entry.getKey()).append('=').append(entry.getValue()).append("] ");
+        }
+
+        Throwable throwable = format(line, message, args);
+        if (throwable != null) {
+            StringWriter stackTrace = new StringWriter();
+            throwable.printStackTrace(new PrintWriter(stackTrace));
+            line.append(System.lineSeparator()).append(stackTrace.toString().trim());
+        }
+
+        if (ASYNC) {
+            try {
+                // Block instead of dropping lines when the writer falls behind
+                pendingLines.incrementAndGet();
+                buffer.put(line.toString());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pendingLines.decrementAndGet();
+                System.out.println(line);
+            }
+        } else {
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Replace each "{}" with the next argument, arrays are joined with ", "
+     * @return the last argument if it is a Throwable without a placeholder
+     */
+    private static Throwable format(StringBuilder line, String message, Object[] args) {
+        int argIndex = 0;
+        int start = 0;
+        int placeholderIndex;
+        while ((placeholderIndex = message.indexOf("{}", start)) >= 0 && argIndex < args.length) {
+            line.append(message, start, placeholderIndex);
+            appendArg(line, args[argIndex++]);
+            start = placeholderIndex + 2;
+        }
+
+        line.append(message, start, message.length());
+
+        if (argIndex < args.length && args[args.length - 1] instanceof Throwable) {
+            return (Throwable) args[args.length - 1];
+        }
+
+        return null;
+    }
+
+    private static void appendArg(StringBuilder line, Object arg) {
+        if (arg instanceof Object[]) {
+            Object[] items = (Object[]) arg;
+            for (int i = 0; i < items.length; i++) {
+                if (i > 0) line.append(", ");
+                line.append(items[i]);
+            }
+        } else {
+            line.append(arg);
+        }
+    }
+
+    private static void write() {
+        List<String> lines = new ArrayList<>();
+        while (true) {
+            try {
+                String line = buffer.poll(1, TimeUnit.SECONDS);
+                if (line == null) continue;
+
+                lines.add(line);
+                buffer.drainTo(lines, BUFFER_SIZE);
+                StringBuilder chunk = new StringBuilder();
+                for (String item : lines) {
+                    chunk.append(item).append(System.lineSeparator());
+                }
+
+                System.out.print(chunk);
+                System.out.flush();
+                pendingLines.addAndGet(-lines.size());
+                lines.clear();
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+}
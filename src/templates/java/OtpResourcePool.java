@@ -0,0 +1,271 @@
+package com.kobiton.scriptlessautomation;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JVM-wide pool of OTP phone numbers and email addresses shared by all tests.
+ * Resources are booked at suite start (Config.OTP_POOL_SIZE per country code and for email addresses),
+ * leased to tests, and replaced by a freshly booked one when a test releases them so every test still gets
+ * a resource nobody else has received a code on. Everything still booked is unbooked at JVM shutdown.
+ */
+public class OtpResourcePool {
+    private static final String EMAIL_ADDRESS_KEY = "email";
+    private static final String PHONE_NUMBER_KEY_PREFIX = "phone:";
+    private static final int UNBOOK_ALL_TIMEOUT_IN_MS = 30000;
+
+    private static final OtpResourcePool instance = new OtpResourcePool();
+
+    private final OtpService otpService = new OtpService();
+    private final Map<String, ResourceQueue> queues = new HashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+        runnable -> Utils.newThread("otp-pool", runnable));
+    // Bulk unbooking at shutdown, the common pool may already be shutting down in the shutdown hook
+    private final ExecutorService unbookExecutor = Utils.newExecutor("otp-unbook");
+    private final LeaseWaitStats leaseWaitStats = new LeaseWaitStats();
+    private boolean isPrebooked = false;
+    private boolean isShutdown = false;
+
+    private OtpResourcePool() {
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "otp-pool-shutdown"));
+    }
+
+    public static OtpResourcePool getInstance() {
+        return instance;
+    }
+
+    public static boolean isEnabled() {
+        return Config.OTP_POOL_SIZE > 0;
+    }
+
+    /**
+     * Start booking the configured resources in the background, call it once at suite start
+     */
+    public synchronized void prebook() {
+        if (!isEnabled() || isPrebooked) return;
+        isPrebooked = true;
+
+        for (String countryCode : Config.OTP_POOL_COUNTRY_CODES) {
+            getQueue(PHONE_NUMBER_KEY_PREFIX + countryCode, countryCode);
+        }
+
+        if (Config.OTP_POOL_EMAIL_ADDRESSES) {
+            getQueue(EMAIL_ADDRESS_KEY, null);
+        }
+    }
+
+    public CompletableFuture<String> leasePhoneNumber(String countryCode) {
+        return lease(PHONE_NUMBER_KEY_PREFIX + countryCode, countryCode, OtpService.FIND_PHONE_NUMBER_TIMEOUT_IN_MS,
+            String.format("No available phone number with country code %s in OTP pool", countryCode));
+    }
+
+    public CompletableFuture<String> leaseEmailAddress() {
+        return lease(EMAIL_ADDRESS_KEY, null, OtpService.FIND_EMAIL_ADDRESS_TIMEOUT_IN_MS,
+            "No available email address in OTP pool");
+    }
+
+    public void releasePhoneNumber(String countryCode, String rawPhoneNumber) {
+        release(PHONE_NUMBER_KEY_PREFIX + countryCode, countryCode, rawPhoneNumber);
+    }
+
+    public void releaseEmailAddress(String emailAddress) {
+        release(EMAIL_ADDRESS_KEY, null, emailAddress);
+    }
+
+    public LeaseWaitStats getLeaseWaitStats() {
+        return leaseWaitStats;
+    }
+
+    private synchronized CompletableFuture<String> lease(String key, String countryCode, int timeoutInMs, String timeoutMessage) {
+        prebook();
+        ResourceQueue queue = getQueue(key, countryCode);
+
+        String resource = queue.available.pollFirst();
+        if (resource != null) {
+            queue.leased.add(resource);
+            leaseWaitStats.record(0);
+            return CompletableFuture.completedFuture(resource);
+        }
+
+        Waiter waiter = new Waiter();
+        queue.waiters.addLast(waiter);
+        scheduler.schedule(() -> {
+            synchronized (OtpResourcePool.this) {
+                if (queue.waiters.remove(waiter)) {
+                    waiter.future.completeExceptionally(new Exception(timeoutMessage));
+                }
+            }
+        }, timeoutInMs, TimeUnit.MILLISECONDS);
+
+        return waiter.future;
+    }
+
+    /**
+     * Unbook the released resource and book a replacement off the test thread
+     */
+    private void release(String key, String countryCode, String resource) {
+        synchronized (this) {
+            ResourceQueue queue = queues.get(key);
+            if (queue == null || !queue.leased.remove(resource)) return;
+        }
+
+        scheduler.execute(() -> {
+            try {
+                unbook(countryCode, resource);
+            } catch (Exception e) {
+                Log.warn("Cannot unbook OTP resource {}, error: {}", resource, e.getMessage());
+            }
+
+            book(key, countryCode);
+        });
+    }
+
+    private ResourceQueue getQueue(String key, String countryCode) {
+        ResourceQueue queue = queues.get(key);
+        if (queue == null) {
+            queue = new ResourceQueue();
+            queues.put(key, queue);
+            Log.info("Pre-booking {} OTP resources for {}", Config.OTP_POOL_SIZE, key);
+            for (int i = 0; i < Config.OTP_POOL_SIZE; i++) {
+                book(key, countryCode);
+            }
+        }
+
+        return queue;
+    }
+
+    private void book(String key, String countryCode) {
+        synchronized (this) {
+            if (isShutdown) return;
+        }
+
+        CompletableFuture<String> booking;
+        try {
+            booking = countryCode != null ? otpService.bookPhoneNumber(countryCode) : otpService.bookEmailAddress();
+        } catch (Exception e) {
+            Log.warn("Cannot book OTP resource for {}, error: {}", key, e.getMessage());
+            return;
+        }
+
+        booking.whenComplete((resource, error) -> {
+            if (error != null) {
+                Log.warn("Cannot book OTP resource for {}, error: {}", key, error.getMessage());
+                return;
+            }
+
+            onBooked(key, countryCode, resource);
+        });
+    }
+
+    private void onBooked(String key, String countryCode, String resource) {
+        boolean shouldUnbook;
+        synchronized (this) {
+            shouldUnbook = isShutdown;
+            if (!shouldUnbook) {
+                ResourceQueue queue = queues.get(key);
+                Waiter waiter = queue.waiters.pollFirst();
+                if (waiter != null) {
+                    queue.leased.add(resource);
+                    leaseWaitStats.record(System.currentTimeMillis() - waiter.requestedAt);
+                    waiter.future.complete(resource);
+                } else {
+                    queue.available.addLast(resource);
+                }
+            }
+        }
+
+        // Booked after shutdown started, give it back right away
+        if (shouldUnbook) {
+            try {
+                unbook(countryCode, resource);
+            } catch (Exception ignored) {
+            }
+        }
+    }
+
+    private void unbook(String countryCode, String resource) throws Exception {
+        if (countryCode != null) {
+            otpService.unbookPhoneNumber(resource);
+        } else {
+            otpService.unbookEmailAddress(resource);
+        }
+    }
+
+    /**
+     * Unbook every booked resource, including the ones leased by tests which crashed before releasing them
+     */
+    public void shutdown() {
+        Map<String, List<String>> resourcesByKey = new HashMap<>();
+        synchronized (this) {
+            if (isShutdown) return;
+            isShutdown = true;
+
+            for (Map.Entry<String, ResourceQueue> entry : queues.entrySet()) {
+                List<String> resources = new ArrayList<>(entry.getValue().available);
+                resources.addAll(entry.getValue().leased);
+                entry.getValue().available.clear();
+                entry.getValue().leased.clear();
+                resourcesByKey.put(entry.getKey(), resources);
+            }
+        }
+
+        List<CompletableFuture<Void>> unbookings = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : resourcesByKey.entrySet()) {
+            String key = entry.getKey();
+            String countryCode = key.startsWith(PHONE_NUMBER_KEY_PREFIX) ? key.substring(PHONE_NUMBER_KEY_PREFIX.length()) : null;
+            for (String resource : entry.getValue()) {
+                unbookings.add(CompletableFuture.runAsync(() -> {
+                    try {
+                        unbook(countryCode, resource);
+                    } catch (Exception e) {
+                        Log.warn("Cannot unbook OTP resource {}, error: {}", resource, e.getMessage());
+                    }
+                }, unbookExecutor));
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(unbookings.toArray(new CompletableFuture<?>[0])).get(UNBOOK_ALL_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            Log.warn("Cannot unbook all OTP resources, error: {}", e.getMessage());
+        }
+
+        if (!unbookings.isEmpty() || leaseWaitStats.count > 0) {
+            Log.info("OTP pool unbooked {} resources, {}", unbookings.size(), leaseWaitStats);
+        }
+
+        scheduler.shutdownNow();
+        unbookExecutor.shutdownNow();
+    }
+
+    private static class ResourceQueue {
+        final Deque<String> available = new ArrayDeque<>();
+        final Set<String> leased = new HashSet<>();
+        final Deque<Waiter> waiters = new ArrayDeque<>();
+    }
+
+    private static class Waiter {
+        final long requestedAt = System.currentTimeMillis();
+        final CompletableFuture<String> future = new CompletableFuture<>();
+    }
+
+    public static class LeaseWaitStats {
+        public long count, totalWaitInMs, maxWaitInMs;
+
+        synchronized void record(long waitInMs) {
+            count++;
+            totalWaitInMs += waitInMs;
+            maxWaitInMs = Math.max(maxWaitInMs, waitInMs);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("leases: %s, average wait: %s ms, max wait: %s ms",
+                count, count > 0 ? totalWaitInMs / count : 0, maxWaitInMs);
+        }
+    }
+}
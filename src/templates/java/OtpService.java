@@ -1,10 +1,9 @@
 package com.kobiton.scriptlessautomation;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
+import com.google.i18n.phonenumbers.NumberParseException;
 import com.google.i18n.phonenumbers.PhoneNumberUtil;
-import com.google.i18n.phonenumbers.Phonenumber;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
@@ -12,31 +11,70 @@ import okhttp3.Response;
 import org.apache.http.HttpHeaders;
 import org.apache.http.client.utils.URIBuilder;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 public class OtpService {
-    public static final int FIND_PHONE_NUMBER_MAX_ATTEMPTS = 12;
-    public static final int FIND_PHONE_NUMBER_INTERVAL_IN_MS = 10000;
-    public static final int FIND_EMAIL_ADDRESS_MAX_ATTEMPTS = 12;
-    public static final int FIND_EMAIL_ADDRESS_INTERVAL_IN_MS = 10000;
-    public static final int FIND_OTP_CODE_MAX_ATTEMPTS = 12;
-    public static final int FIND_OTP_CODE_INTERVAL_IN_MS = 10000;
+    // Poll quickly first since resources and codes usually arrive within seconds, then back off up to the max interval
+    public static final int FIND_PHONE_NUMBER_TIMEOUT_IN_MS = 120000;
+    public static final int FIND_EMAIL_ADDRESS_TIMEOUT_IN_MS = 120000;
+    public static final int FIND_OTP_CODE_TIMEOUT_IN_MS = 120000;
+    public static final int POLLING_INITIAL_INTERVAL_IN_MS = 1000;
+    public static final int POLLING_MAX_INTERVAL_IN_MS = 10000;
+    public static final double POLLING_JITTER = 0.2;
+
+    private static final RetryPolicy POLLING = RetryPolicy.named("otp")
+        .withBackoff(POLLING_INITIAL_INTERVAL_IN_MS, POLLING_MAX_INTERVAL_IN_MS, 2).withJitter(POLLING_JITTER);
 
-    private final OkHttpClient httpClient = new OkHttpClient();
+    private final OkHttpClient httpClient = SharedResources.HTTP_CLIENT;
 
     public String countryCode = "1";
     public String rawPhoneNumber;
     public String phoneNumber;
     public PhoneNumberUtil phoneNumberUtil = PhoneNumberUtil.getInstance();
-    public Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    public Gson gson = SharedResources.GSON;
 
     public String emailAddress;
 
     public boolean isCleanup = false;
+    // The phone number or email address is leased from OtpResourcePool instead of booked by this service
+    public boolean isLeased = false;
     public String otpCode;
 
     public String findOtpPhoneNumber(String countryCode) throws Exception {
-        System.out.println("Finding an available phone number for OTP...");
+        return Utils.await(findOtpPhoneNumberAsync(countryCode));
+    }
+
+    /**
+     * Lease a phone number from OtpResourcePool when it is enabled, book one on demand otherwise
+     */
+    public CompletableFuture<String> findOtpPhoneNumberAsync(String countryCode) throws Exception {
+        Log.info("Finding an available phone number for OTP...");
 
         this.countryCode = countryCode;
+        isLeased = OtpResourcePool.isEnabled();
+        CompletableFuture<String> booking = isLeased
+            ? OtpResourcePool.getInstance().leasePhoneNumber(countryCode)
+            : bookPhoneNumber(countryCode);
+
+        return booking.thenApply(bookedPhoneNumber -> {
+            isCleanup = false;
+            rawPhoneNumber = bookedPhoneNumber;
+            try {
+                phoneNumber = String.valueOf(phoneNumberUtil.parseAndKeepRawInput(rawPhoneNumber, countryCode).getNationalNumber());
+            } catch (NumberParseException e) {
+                throw new CompletionException(e);
+            }
+
+            Log.info("Found an available phone number {} to receive OTP code", rawPhoneNumber);
+            return rawPhoneNumber;
+        });
+    }
+
+    /**
+     * Book an available phone number of the country, polling until one is free
+     */
+    public CompletableFuture<String> bookPhoneNumber(String countryCode) throws Exception {
         URIBuilder uriBuilder = new URIBuilder(Config.KOBITON_API_URL + "/v1/otp/phone-numbers/available");
         uriBuilder.addParameter("countryCode", countryCode);
 
@@ -45,7 +83,7 @@ public class OtpService {
                 .header(HttpHeaders.AUTHORIZATION, Config.getBasicAuthString())
                 .get();
 
-        rawPhoneNumber = Utils.retry(new Utils.Task<String>() {
+        return POLLING.withName("otp.bookPhoneNumber").withBudget(FIND_PHONE_NUMBER_TIMEOUT_IN_MS).executeAsync(new Utils.Task<String>() {
             private int responseCode;
 
             @Override
@@ -53,17 +91,13 @@ public class OtpService {
                 try (Response response = httpClient.newCall(requestBuilder.build()).execute()) {
                     responseCode = response.code();
                     String responseBody = response.body().string();
-                    if (responseCode != 200) {
+                    if (responseCode != 200 || responseBody.isEmpty()) {
                         throw new Exception(responseBody);
                     }
 
-                    isCleanup = false;
-                    rawPhoneNumber = responseBody;
-                    Phonenumber.PhoneNumber parsedPhoneNumber = phoneNumberUtil.parseAndKeepRawInput(rawPhoneNumber, countryCode);
-                    phoneNumber = String.valueOf(parsedPhoneNumber.getNationalNumber());
-
-                    System.out.println(String.format("Found an available phone number %s to receive OTP code", rawPhoneNumber));
-                    return rawPhoneNumber;
+                    // Make sure the number is usable before keeping it
+                    phoneNumberUtil.parseAndKeepRawInput(responseBody, countryCode);
+                    return responseBody;
                 }
             }
 
@@ -73,15 +107,14 @@ public class OtpService {
                     throw e;
                 }
 
-                System.out.println(e.getMessage());
+                Log.debug(e.getMessage());
             }
-        }, FIND_PHONE_NUMBER_MAX_ATTEMPTS, FIND_PHONE_NUMBER_INTERVAL_IN_MS);
-
-        if (rawPhoneNumber == null || rawPhoneNumber.isEmpty()) {
-            throw new Exception("No available phone number to receive OTP code");
-        }
+        }, "No available phone number to receive OTP code");
+    }
 
-        return rawPhoneNumber;
+    public void unbookPhoneNumber(String rawPhoneNumber) throws Exception {
+        URIBuilder uriBuilder = new URIBuilder(Config.KOBITON_API_URL + String.format("/v1/otp/phone-numbers/%s/unbook", rawPhoneNumber));
+        unbook(uriBuilder);
     }
 
     public String getRandomPhoneNumber(int numberLength) {
@@ -92,8 +125,33 @@ public class OtpService {
     }
 
     public String findOtpEmailAddress() throws Exception {
-        System.out.println("Finding an email address for OTP...");
+        return Utils.await(findOtpEmailAddressAsync());
+    }
+
+    /**
+     * Lease an email address from OtpResourcePool when it is enabled, book one on demand otherwise
+     */
+    public CompletableFuture<String> findOtpEmailAddressAsync() throws Exception {
+        Log.info("Finding an email address for OTP...");
+
+        isLeased = OtpResourcePool.isEnabled();
+        CompletableFuture<String> booking = isLeased
+            ? OtpResourcePool.getInstance().leaseEmailAddress()
+            : bookEmailAddress();
 
+        return booking.thenApply(bookedEmailAddress -> {
+            isCleanup = false;
+            emailAddress = bookedEmailAddress;
+
+            Log.info("Found an available email address {} to receive OTP code", emailAddress);
+            return emailAddress;
+        });
+    }
+
+    /**
+     * Book an available email address, polling until one is free
+     */
+    public CompletableFuture<String> bookEmailAddress() throws Exception {
         URIBuilder uriBuilder = new URIBuilder(Config.KOBITON_API_URL + "/v1/otp/email-address/available");
 
         Request.Builder requestBuilder = new Request.Builder()
@@ -101,7 +159,7 @@ public class OtpService {
                 .header(HttpHeaders.AUTHORIZATION, Config.getBasicAuthString())
                 .get();
 
-        emailAddress = Utils.retry(new Utils.Task<String>() {
+        return POLLING.withName("otp.bookEmailAddress").withBudget(FIND_EMAIL_ADDRESS_TIMEOUT_IN_MS).executeAsync(new Utils.Task<String>() {
             private int responseCode;
 
             @Override
@@ -109,13 +167,10 @@ public class OtpService {
                 try (Response response = httpClient.newCall(requestBuilder.build()).execute()) {
                     responseCode = response.code();
                     String responseBody = response.body().string();
-                    if (responseCode != 200) {
+                    if (responseCode != 200 || responseBody.isEmpty()) {
                         throw new Exception(responseBody);
                     }
 
-                    isCleanup = false;
-
-                    System.out.println(String.format("Found an available email address %s to receive OTP code", responseBody));
                     return responseBody;
                 }
             }
@@ -126,28 +181,35 @@ public class OtpService {
                     throw e;
                 }
 
-                System.out.println(e.getMessage());
+                Log.debug(e.getMessage());
             }
-        }, FIND_EMAIL_ADDRESS_MAX_ATTEMPTS, FIND_EMAIL_ADDRESS_INTERVAL_IN_MS);
-
-        if (emailAddress == null || emailAddress.isEmpty()) {
-            throw new Exception("No available email address to receive OTP code");
-        }
+        }, "No available email address to receive OTP code");
+    }
 
-        return emailAddress;
+    public void unbookEmailAddress(String emailAddress) throws Exception {
+        URIBuilder uriBuilder = new URIBuilder(Config.KOBITON_API_URL + "/v1/otp/email-address/unbook");
+        uriBuilder.addParameter("emailAddress", emailAddress);
+        unbook(uriBuilder);
     }
 
     public String findOtpCode() throws Exception {
+        return Utils.await(findOtpCodeAsync());
+    }
+
+    /**
+     * Start polling for the OTP code in the background, the test can keep interacting with the app meanwhile
+     */
+    public CompletableFuture<String> findOtpCodeAsync() throws Exception {
         if (rawPhoneNumber == null && emailAddress == null) {
             throw new Exception("Please find an available phone number or email address first");
         }
 
         URIBuilder uriBuilder;
         if (rawPhoneNumber != null) {
-            System.out.println(String.format("Find OTP code sent to phone number %s", rawPhoneNumber));
+            Log.info("Find OTP code sent to phone number {}", rawPhoneNumber);
             uriBuilder = new URIBuilder(Config.KOBITON_API_URL + String.format("/v1/otp/phone-numbers/%s/otp-code", rawPhoneNumber));
         } else {
-            System.out.println(String.format("Find OTP code sent to email address %s", emailAddress));
+            Log.info("Find OTP code sent to email address {}", emailAddress);
             uriBuilder = new URIBuilder(Config.KOBITON_API_URL + "/v1/otp/email-address/otp-code");
             uriBuilder.addParameter("emailAddress", emailAddress);
         }
@@ -157,8 +219,13 @@ public class OtpService {
                 .header(HttpHeaders.AUTHORIZATION, Config.getBasicAuthString())
                 .get();
 
-        otpCode = Utils.retry(new Utils.Task<String>() {
+        String notFoundMessage = rawPhoneNumber != null
+            ? String.format("Cannot find any OTP code sent to phone number %s", rawPhoneNumber)
+            : String.format("Cannot find any OTP code sent to email address %s", emailAddress);
+
+        return POLLING.withName("otp.findOtpCode").withBudget(FIND_OTP_CODE_TIMEOUT_IN_MS).executeAsync(new Utils.Task<String>() {
             private int responseCode;
+
             @Override
             String exec(int attempt) throws Exception {
                 try (Response response = httpClient.newCall(requestBuilder.build()).execute()) {
@@ -183,19 +250,9 @@ public class OtpService {
                     throw e;
                 }
 
-                System.out.println(e.getMessage());
+                Log.debug(e.getMessage());
             }
-        }, FIND_OTP_CODE_MAX_ATTEMPTS, FIND_OTP_CODE_INTERVAL_IN_MS);
-
-        if (otpCode == null || otpCode.isEmpty()) {
-            if (rawPhoneNumber != null) {
-                throw new Exception(String.format("Cannot find any OTP code sent to phone number %s", rawPhoneNumber));
-            } else {
-                throw new Exception(String.format("Cannot find any OTP code sent to email address %s", emailAddress));
-            }
-        }
-
-        return otpCode;
+        }, notFoundMessage);
     }
 
     public void cleanup() {
@@ -204,32 +261,37 @@ public class OtpService {
         }
 
         if (rawPhoneNumber != null) {
-            System.out.println(String.format("Cleanup OTP service for phone number %s", rawPhoneNumber));
+            Log.info("Cleanup OTP service for phone number {}", rawPhoneNumber);
         } else {
-            System.out.println(String.format("Cleanup OTP service for email address %s", emailAddress));
+            Log.info("Cleanup OTP service for email address {}", emailAddress);
         }
 
         try {
-            URIBuilder uriBuilder;
-            if (rawPhoneNumber != null) {
-                uriBuilder = new URIBuilder(Config.KOBITON_API_URL + String.format("/v1/otp/phone-numbers/%s/unbook", rawPhoneNumber));
+            if (isLeased) {
+                if (rawPhoneNumber != null) {
+                    OtpResourcePool.getInstance().releasePhoneNumber(countryCode, rawPhoneNumber);
+                } else {
+                    OtpResourcePool.getInstance().releaseEmailAddress(emailAddress);
+                }
+            } else if (rawPhoneNumber != null) {
+                unbookPhoneNumber(rawPhoneNumber);
             } else {
-                uriBuilder = new URIBuilder(Config.KOBITON_API_URL + "/v1/otp/email-address/unbook");
-                uriBuilder.addParameter("emailAddress", emailAddress);
+                unbookEmailAddress(emailAddress);
             }
 
-            Request.Builder requestBuilder = new Request.Builder()
-                    .url(uriBuilder.build().toURL())
-                    .header(HttpHeaders.AUTHORIZATION, Config.getBasicAuthString())
-                    .post(RequestBody.create(null, new byte[0]));
-
+            isCleanup = true;
+        } catch (Exception e) {
+            Log.warn("Cannot clean up OTP resources", e);
+        }
+    }
 
+    private void unbook(URIBuilder uriBuilder) throws Exception {
+        Request.Builder requestBuilder = new Request.Builder()
+                .url(uriBuilder.build().toURL())
+                .header(HttpHeaders.AUTHORIZATION, Config.getBasicAuthString())
+                .post(RequestBody.create(null, new byte[0]));
 
-            try (Response response = httpClient.newCall(requestBuilder.build()).execute()) {
-                isCleanup = true;
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+        try (Response ignored = httpClient.newCall(requestBuilder.build()).execute()) {
         }
     }
 }
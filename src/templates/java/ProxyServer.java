@@ -1,7 +1,6 @@
 package com.kobiton.scriptlessautomation;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
 import fi.iki.elonen.NanoHTTPD;
 import okhttp3.*;
@@ -11,106 +10,175 @@ import org.openqa.selenium.remote.ErrorCodes;
 import org.springframework.util.SocketUtils;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
 
 public class ProxyServer extends NanoHTTPD {
-    public long currentCommandId;
+    // Response header the server can set to report the context after a command, e.g. when flex correct switched it
+    public static final String CONTEXT_HEADER = System.getProperty("kobiton.contextHeader", "X-Kobiton-Context");
+    private static final Pattern CONTEXT_URI_PATTERN = Pattern.compile("^/session/[^/]+/context$");
+
+    // Set by the test thread, read by the request threads
+    public volatile long currentCommandId;
     public long kobitonSessionId;
-    public Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+    // Context of the session seen in the proxied context commands and CONTEXT_HEADER, null until known
+    public volatile String currentContext;
+    // The server reports the context through CONTEXT_HEADER, no need to ask for it
+    public volatile boolean isContextReported = false;
+    public Gson gson = SharedResources.GSON;
 
     private final String authString = Config.getBasicAuthString();
     private final int socketTimeoutInSecond = 15 * 60;
     private boolean forceW3C = false;
 
-    private final OkHttpClient httpClient = new OkHttpClient.Builder()
+    // Shares the connection pool and dispatcher of the other sessions, only the timeouts differ
+    private final OkHttpClient httpClient = SharedResources.HTTP_CLIENT.newBuilder()
             .connectTimeout(socketTimeoutInSecond, TimeUnit.SECONDS)
             .writeTimeout(socketTimeoutInSecond, TimeUnit.SECONDS)
             .readTimeout(socketTimeoutInSecond, TimeUnit.SECONDS)
             .build();
 
     public ProxyServer() throws IOException {
-        super(SocketUtils.findAvailableTcpPort());
+        this(SocketUtils.findAvailableTcpPort());
+        if (Utils.isVirtualThreadEnabled()) {
+            setAsyncRunner(new ThreadPerRequestAsyncRunner(true));
+        }
+
         start(socketTimeoutInSecond * 1000, false);
     }
 
+    /**
+     * Proxy which is not listening yet, e.g. to benchmark the response handling
+     */
+    ProxyServer(int port) {
+        super(port);
+    }
+
     @Override
     public Response serve(IHTTPSession session) {
         try {
-            Request request = buildAppiumRequest(session);
+            String requestBodyString = readRequestBody(session);
+            Request request = buildAppiumRequest(session, requestBodyString);
 
             try (okhttp3.Response response = httpClient.newCall(request).execute()) {
                 int statusCode = response.code();
                 ResponseStatus status = new ResponseStatus(statusCode, response.message());
                 String contentType = response.header(HttpHeaders.CONTENT_TYPE, "application/json");
-                String bodyString = response.body().string();
-
-                try {
-                    if ("/session".equals(session.getUri()) && session.getMethod() == NanoHTTPD.Method.POST && Utils.isStatusCodeSuccess(statusCode)) {
-                        JsonObject bodyJson = gson.fromJson(bodyString, JsonObject.class);
-                        kobitonSessionId = bodyJson.get("value").getAsJsonObject().get("kobitonSessionId").getAsLong();
-
-                        // JSON Wire format, convert response body to W3C format
-                        if (bodyJson.has("status") && bodyJson.has("sessionId")) {
-                            forceW3C = true;
-                            JsonObject desiredCapsJson = bodyJson.get("value").getAsJsonObject();
-
-                            JsonObject w3cValueJson = new JsonObject();
-                            w3cValueJson.add("capabilities", desiredCapsJson);
-                            w3cValueJson.addProperty("sessionId", bodyJson.get("sessionId").getAsString());
-
-                            JsonObject w3cBodyJson = new JsonObject();
-                            w3cBodyJson.add("value", w3cValueJson);
-                            bodyString = w3cBodyJson.toString();
-                        }
-                    }
-
-                    // Convert JSON Wire error response to W3C format
-                    if (!Utils.isStatusCodeSuccess(statusCode) && forceW3C) {
-                        JsonObject bodyJson = gson.fromJson(bodyString, JsonObject.class);
-                        int appiumErrorCode = bodyJson.get("status").getAsInt();
-                        ErrorCodes errorCodes = new ErrorCodes();
-                        String error = errorCodes.toState(appiumErrorCode);
-                        JsonObject valueJson = bodyJson.getAsJsonObject("value");
-                        valueJson.addProperty("error", error);
-                        bodyString = bodyJson.toString();
-                    }
-                } catch (Exception ignored) {
-                }
-
+                String bodyString = rewriteResponseBody(session.getUri(), session.getMethod(), statusCode, response.body().string());
+                trackContext(session.getUri(), session.getMethod(), statusCode, requestBodyString, bodyString, response.header(CONTEXT_HEADER));
                 return newFixedLengthResponse(status, contentType, bodyString);
             }
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.warn("Cannot proxy {} {}", session.getMethod(), session.getUri(), e);
         }
 
         return super.serve(session);
     }
 
+    /**
+     * Pick the Kobiton session id from the new session response and convert JSON Wire responses to W3C format
+     */
+    public String rewriteResponseBody(String uri, Method method, int statusCode, String bodyString) {
+        try {
+            if ("/session".equals(uri) && method == NanoHTTPD.Method.POST && Utils.isStatusCodeSuccess(statusCode)) {
+                JsonObject bodyJson = gson.fromJson(bodyString, JsonObject.class);
+                kobitonSessionId = bodyJson.get("value").getAsJsonObject().get("kobitonSessionId").getAsLong();
+
+                // JSON Wire format, convert response body to W3C format
+                if (bodyJson.has("status") && bodyJson.has("sessionId")) {
+                    forceW3C = true;
+                    bodyString = convertSessionResponseToW3C(bodyJson).toString();
+                }
+            }
+
+            // Convert JSON Wire error response to W3C format
+            if (!Utils.isStatusCodeSuccess(statusCode) && forceW3C) {
+                JsonObject bodyJson = gson.fromJson(bodyString, JsonObject.class);
+                bodyString = convertErrorResponseToW3C(bodyJson).toString();
+            }
+        } catch (Exception ignored) {
+        }
+
+        return bodyString;
+    }
+
+    public static JsonObject convertSessionResponseToW3C(JsonObject bodyJson) {
+        JsonObject desiredCapsJson = bodyJson.get("value").getAsJsonObject();
+
+        JsonObject w3cValueJson = new JsonObject();
+        w3cValueJson.add("capabilities", desiredCapsJson);
+        w3cValueJson.addProperty("sessionId", bodyJson.get("sessionId").getAsString());
+
+        JsonObject w3cBodyJson = new JsonObject();
+        w3cBodyJson.add("value", w3cValueJson);
+        return w3cBodyJson;
+    }
+
+    public static JsonObject convertErrorResponseToW3C(JsonObject bodyJson) {
+        int appiumErrorCode = bodyJson.get("status").getAsInt();
+        ErrorCodes errorCodes = new ErrorCodes();
+        String error = errorCodes.toState(appiumErrorCode);
+        JsonObject valueJson = bodyJson.getAsJsonObject("value");
+        valueJson.addProperty("error", error);
+        return bodyJson;
+    }
+
+    /**
+     * Follow the context of the session without extra commands: from the context commands the client sends
+     * and from CONTEXT_HEADER when the server sets it
+     */
+    public void trackContext(String uri, Method method, int statusCode, String requestBodyString, String responseBodyString, String contextHeader) {
+        if (contextHeader != null && !contextHeader.isEmpty()) {
+            currentContext = contextHeader;
+            isContextReported = true;
+            return;
+        }
+
+        if (!Utils.isStatusCodeSuccess(statusCode) || !CONTEXT_URI_PATTERN.matcher(stripBasePath(uri)).matches()) return;
+
+        try {
+            if (method == NanoHTTPD.Method.POST && requestBodyString != null) {
+                currentContext = gson.fromJson(requestBodyString, JsonObject.class).get("name").getAsString();
+            } else if (method == NanoHTTPD.Method.GET) {
+                currentContext = gson.fromJson(responseBodyString, JsonObject.class).get("value").getAsString();
+            }
+        } catch (Exception e) {
+            Log.debug("Cannot read context from {} {}, error: {}", method, uri, e.getMessage());
+        }
+    }
+
     public okhttp3.Request buildAppiumRequest(IHTTPSession session) throws Exception {
+        return buildAppiumRequest(session, readRequestBody(session));
+    }
+
+    public String readRequestBody(IHTTPSession session) throws Exception {
         Method method = session.getMethod();
         HashMap<String, String> requestBodyMap = new HashMap<>();
         session.parseBody(requestBodyMap);
 
-        String requestBodyString = null;
         if (method == NanoHTTPD.Method.POST) {
-            requestBodyString = requestBodyMap.get("postData");
+            return requestBodyMap.get("postData");
         } else if (method == NanoHTTPD.Method.PUT) {
-            requestBodyString = requestBodyMap.get("putData");
+            return requestBodyMap.get("putData");
         } else if (method == NanoHTTPD.Method.PATCH) {
-            requestBodyString = requestBodyMap.get("patchData");
+            return requestBodyMap.get("patchData");
         }
 
+        return null;
+    }
+
+    public okhttp3.Request buildAppiumRequest(IHTTPSession session, String requestBodyString) throws Exception {
+        Method method = session.getMethod();
         RequestBody requestBody = null;
         if (requestBodyString != null) {
             requestBody = RequestBody.create(MediaType.parse("application/json"), requestBodyString);
         }
 
-        String uri = session.getUri();
-        if (uri.startsWith("/wd/hub")) {
-            uri = uri.replace("/wd/hub", "");
-        }
-
+        String uri = stripBasePath(session.getUri());
         URIBuilder uriBuilder = new URIBuilder(Config.getAppiumServerUrlWithAuth() + uri);
         if (Config.DEVICE_SOURCE == Config.DEVICE_SOURCE_ENUMS.KOBITON && currentCommandId > 0) {
             uriBuilder.addParameter("baseCommandId", String.valueOf(currentCommandId));
@@ -124,10 +192,44 @@ public class ProxyServer extends NanoHTTPD {
         return requestBuilder.build();
     }
 
+    private static String stripBasePath(String uri) {
+        return uri.startsWith("/wd/hub") ? uri.replace("/wd/hub", "") : uri;
+    }
+
     public String getServerUrl() {
         return "http://localhost:" + getListeningPort();
     }
 
+    /**
+     * Serve each client connection on its own thread, optionally a virtual one
+     */
+    public static class ThreadPerRequestAsyncRunner implements NanoHTTPD.AsyncRunner {
+        private final List<ClientHandler> running = Collections.synchronizedList(new ArrayList<>());
+        private final boolean virtual;
+
+        public ThreadPerRequestAsyncRunner(boolean virtual) {
+            this.virtual = virtual;
+        }
+
+        @Override
+        public void closeAll() {
+            for (ClientHandler clientHandler : new ArrayList<>(running)) {
+                clientHandler.close();
+            }
+        }
+
+        @Override
+        public void closed(ClientHandler clientHandler) {
+            running.remove(clientHandler);
+        }
+
+        @Override
+        public void exec(ClientHandler clientHandler) {
+            running.add(clientHandler);
+            Utils.newThread("proxy-request", clientHandler, virtual).start();
+        }
+    }
+
     public static class ResponseStatus implements NanoHTTPD.Response.IStatus {
         public int requestStatus;
         public String description;
@@ -0,0 +1,231 @@
+package com.kobiton.scriptlessautomation;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.commons.io.FileUtils;
+import org.openqa.selenium.NoSuchSessionException;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+/**
+ * Retries a task with exponential backoff and jitter until it succeeds, its time budget is spent, its attempt limit
+ * is reached or it fails with a non-retryable error (an abort predicate matches, or Task.handleException throws).
+ * Policies are immutable, the with* methods return a copy. Attempts used by every call site (the policy name) are
+ * written to reports/retry-stats.json at exit, e.g. a call site which always succeeds at the first attempt after
+ * a failure has a delay that is too long.
+ */
+public class RetryPolicy {
+    public static final String STATS_FILE = "reports/retry-stats.json";
+
+    // Only triggers the attempts, they run on attemptExecutor since tasks block (e.g. HTTP calls)
+    private static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2,
+        runnable -> Utils.newThread("retry-scheduler", runnable));
+    private static final ExecutorService attemptExecutor = Utils.newExecutor("retry-attempt");
+    private static final ConcurrentHashMap<String, Stats> statsByName = new ConcurrentHashMap<>();
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(RetryPolicy::saveStats, "retry-stats"));
+    }
+
+    public final String name;
+    // 0 for no time budget or no attempt limit
+    public final long budgetInMs;
+    public final int maxAttempts;
+    public final long initialIntervalInMs, maxIntervalInMs;
+    public final double multiplier, jitter;
+    private final Predicate<Exception> abortOn;
+
+    private RetryPolicy(String name, long budgetInMs, int maxAttempts, long initialIntervalInMs, long maxIntervalInMs,
+                        double multiplier, double jitter, Predicate<Exception> abortOn) {
+        this.name = name;
+        this.budgetInMs = budgetInMs;
+        this.maxAttempts = maxAttempts;
+        this.initialIntervalInMs = initialIntervalInMs;
+        this.maxIntervalInMs = Math.max(maxIntervalInMs, initialIntervalInMs);
+        this.multiplier = Math.max(multiplier, 1);
+        this.jitter = jitter;
+        this.abortOn = abortOn;
+    }
+
+    /**
+     * 10 seconds budget, 500 ms interval doubled up to 5 seconds with 20% jitter, aborts once the session is gone
+     */
+    public static RetryPolicy named(String name) {
+        return new RetryPolicy(name, 10000, 0, 500, 5000, 2, 0.2, e -> e instanceof NoSuchSessionException);
+    }
+
+    /**
+     * Fixed attempt count and interval without budget or jitter, the behavior of Utils.retry
+     */
+    public static RetryPolicy fixed(String name, int maxAttempts, long intervalInMs) {
+        return named(name).withBudget(0).withMaxAttempts(Math.max(maxAttempts, 1)).withBackoff(intervalInMs, intervalInMs, 1).withJitter(0);
+    }
+
+    public RetryPolicy withName(String name) {
+        return new RetryPolicy(name, budgetInMs, maxAttempts, initialIntervalInMs, maxIntervalInMs, multiplier, jitter, abortOn);
+    }
+
+    public RetryPolicy withBudget(long budgetInMs) {
+        return new RetryPolicy(name, budgetInMs, maxAttempts, initialIntervalInMs, maxIntervalInMs, multiplier, jitter, abortOn);
+    }
+
+    public RetryPolicy withMaxAttempts(int maxAttempts) {
+        return new RetryPolicy(name, budgetInMs, maxAttempts, initialIntervalInMs, maxIntervalInMs, multiplier, jitter, abortOn);
+    }
+
+    public RetryPolicy withBackoff(long initialIntervalInMs, long maxIntervalInMs, double multiplier) {
+        return new RetryPolicy(name, budgetInMs, maxAttempts, initialIntervalInMs, maxIntervalInMs, multiplier, jitter, abortOn);
+    }
+
+    public RetryPolicy withJitter(double jitter) {
+        return new RetryPolicy(name, budgetInMs, maxAttempts, initialIntervalInMs, maxIntervalInMs, multiplier, jitter, abortOn);
+    }
+
+    /**
+     * Also give up right away on errors matching the predicate
+     */
+    public RetryPolicy abortOn(Predicate<Exception> predicate) {
+        return new RetryPolicy(name, budgetInMs, maxAttempts, initialIntervalInMs, maxIntervalInMs, multiplier, jitter, abortOn.or(predicate));
+    }
+
+    /**
+     * Run the task on the current thread, sleeping between attempts
+     * @throws Exception the last error when giving up
+     */
+    public <T> T execute(Utils.Task<T> task) throws Exception {
+        long startedAt = System.currentTimeMillis();
+        long deadline = getDeadline(startedAt);
+        long intervalInMs = initialIntervalInMs;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = task.exec(attempt);
+                getStats().record(attempt, System.currentTimeMillis() - startedAt, true);
+                return result;
+            } catch (Exception e) {
+                long delayInMs = onFailure(task, e, attempt, intervalInMs, startedAt, deadline, null);
+                StepTelemetry.recordRetryOnCurrent();
+                if (delayInMs > 0) {
+                    try (StepTelemetry.Span ignored = StepTelemetry.startOnCurrent(StepTelemetry.CATEGORIES.RETRY)) {
+                        Thread.sleep(delayInMs);
+                    }
+                }
+            }
+
+            intervalInMs = getNextInterval(intervalInMs);
+        }
+    }
+
+    /**
+     * Run the attempts in the background, no thread is held while waiting for the next one
+     * @param exhaustedMessage message of the error when the budget or attempts are used up, null for the last error
+     */
+    public <T> CompletableFuture<T> executeAsync(Utils.Task<T> task, String exhaustedMessage) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long startedAt = System.currentTimeMillis();
+        scheduleAttempt(future, task, 1, 0, initialIntervalInMs, startedAt, getDeadline(startedAt), exhaustedMessage);
+        return future;
+    }
+
+    private <T> void scheduleAttempt(CompletableFuture<T> future, Utils.Task<T> task, int attempt, long delayInMs,
+                                     long intervalInMs, long startedAt, long deadline, String exhaustedMessage) {
+        scheduler.schedule(() -> attemptExecutor.execute(() -> {
+            // Cancelled by the caller
+            if (future.isDone()) return;
+
+            try {
+                T result = task.exec(attempt);
+                getStats().record(attempt, System.currentTimeMillis() - startedAt, true);
+                future.complete(result);
+                return;
+            } catch (Exception e) {
+                try {
+                    long nextDelayInMs = onFailure(task, e, attempt, intervalInMs, startedAt, deadline, exhaustedMessage);
+                    scheduleAttempt(future, task, attempt + 1, nextDelayInMs, getNextInterval(intervalInMs),
+                        startedAt, deadline, exhaustedMessage);
+                } catch (Exception failure) {
+                    future.completeExceptionally(failure);
+                }
+            }
+        }), delayInMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Decide what happens after a failed attempt
+     * @return the delay before the next attempt
+     * @throws Exception the error to give up with
+     */
+    private long onFailure(Utils.Task<?> task, Exception e, int attempt, long intervalInMs, long startedAt, long deadline,
+                           String exhaustedMessage) throws Exception {
+        try {
+            task.handleException(e, attempt);
+        } catch (Exception fatal) {
+            getStats().record(attempt, System.currentTimeMillis() - startedAt, false);
+            throw fatal;
+        }
+
+        if (abortOn.test(e)) {
+            getStats().record(attempt, System.currentTimeMillis() - startedAt, false);
+            throw e;
+        }
+
+        long remainingInMs = deadline - System.currentTimeMillis();
+        if ((maxAttempts > 0 && attempt >= maxAttempts) || remainingInMs <= 0) {
+            getStats().record(attempt, System.currentTimeMillis() - startedAt, false);
+            if (exhaustedMessage != null) throw new Exception(exhaustedMessage, e);
+            throw e;
+        }
+
+        // The last attempt runs right at the deadline instead of being skipped
+        double jitterFactor = jitter > 0 ? 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter) : 1;
+        return Math.min((long) (intervalInMs * jitterFactor), remainingInMs);
+    }
+
+    private long getNextInterval(long intervalInMs) {
+        return Math.min((long) (intervalInMs * multiplier), maxIntervalInMs);
+    }
+
+    private long getDeadline(long startedAt) {
+        return budgetInMs > 0 ? startedAt + budgetInMs : Long.MAX_VALUE;
+    }
+
+    private Stats getStats() {
+        return statsByName.computeIfAbsent(name, k -> new Stats());
+    }
+
+    public static Map<String, Stats> getAllStats() {
+        return new TreeMap<>(statsByName);
+    }
+
+    private static void saveStats() {
+        if (statsByName.isEmpty()) return;
+
+        try {
+            Gson gson = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+            File statsFile = new File(System.getProperty("user.dir"), STATS_FILE);
+            FileUtils.writeStringToFile(statsFile, gson.toJson(getAllStats()), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            // The logger might be flushed already at shutdown
+            System.err.println("Cannot save retry stats: " + e.getMessage());
+        }
+    }
+
+    public static class Stats {
+        public long calls, successes, firstAttemptSuccesses, attempts, maxAttemptsUsed, totalDurationInMs;
+
+        synchronized void record(int attemptsUsed, long durationInMs, boolean succeeded) {
+            calls++;
+            attempts += attemptsUsed;
+            maxAttemptsUsed = Math.max(maxAttemptsUsed, attemptsUsed);
+            totalDurationInMs += durationInMs;
+            if (succeeded) {
+                successes++;
+                if (attemptsUsed == 1) firstAttemptSuccesses++;
+            }
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.kobiton.scriptlessautomation;
+
+import org.openqa.selenium.Dimension;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.Point;
+import org.openqa.selenium.Rectangle;
+import org.openqa.selenium.TakesScreenshot;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Screen size (in screenshot pixels) of devices, probed once per device model, OS version and orientation
+ * and shared by every test in the JVM. Only the PNG header of the screenshot is decoded.
+ * Coordinate helpers are pure arithmetic so gestures can be built without server calls.
+ */
+public class ScreenGeometry {
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    // Signature (8) + IHDR length (4) + IHDR type (4) + width (4) + height (4)
+    private static final int PNG_HEADER_LENGTH = 24;
+    // Smallest multiple of 4 base64 characters covering the PNG header
+    private static final int PNG_HEADER_BASE64_LENGTH = 32;
+
+    private static final ConcurrentHashMap<String, CompletableFuture<Point>> screenSizes = new ConcurrentHashMap<>();
+
+    public static String getDeviceKey(String deviceName, String platformVersion, Object orientation) {
+        return String.format("%s|%s|%s", deviceName, platformVersion, orientation != null ? orientation : "DEFAULT");
+    }
+
+    /**
+     * Get the cached screen size of the device, or take one screenshot to probe it.
+     * Concurrent tests on the same device key wait for a single probe.
+     */
+    public static Point getScreenSize(TakesScreenshot driver, String deviceKey) throws Exception {
+        CompletableFuture<Point> probe = new CompletableFuture<>();
+        CompletableFuture<Point> existing = screenSizes.putIfAbsent(deviceKey, probe);
+        if (existing != null) return Utils.await(existing);
+
+        try {
+            Point screenSize = probeScreenSize(driver);
+            Log.info("Screen size of {} is {}x{}", deviceKey, screenSize.x, screenSize.y);
+            probe.complete(screenSize);
+            return screenSize;
+        } catch (Exception e) {
+            // Let the next caller probe again
+            screenSizes.remove(deviceKey, probe);
+            probe.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public static void invalidate(String deviceKey) {
+        screenSizes.remove(deviceKey);
+    }
+
+    private static Point probeScreenSize(TakesScreenshot driver) throws IOException {
+        String base64 = driver.getScreenshotAs(OutputType.BASE64);
+        Point screenSize = readPngSize(decodeBase64Prefix(base64, PNG_HEADER_BASE64_LENGTH));
+        if (screenSize != null) return screenSize;
+
+        // Not a PNG, fall back to decoding the whole image
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(Base64.getMimeDecoder().decode(base64)));
+        if (image == null) throw new IOException("Cannot decode screenshot to get screen size");
+        return new Point(image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Offset to center an app smaller than the screen, e.g. an iPhone app on iPad
+     */
+    public static Point calculateAppOffset(Point screenSize, double retinaScale, Dimension appSize) {
+        double screenWidthScaled = screenSize.x / retinaScale;
+        double screenHeightScaled = screenSize.y / retinaScale;
+
+        int offsetX = 0;
+        int offsetY = 0;
+        if (screenWidthScaled > appSize.width) {
+            offsetX = (int) ((screenWidthScaled - appSize.width) / 2);
+        }
+
+        if (screenHeightScaled > appSize.height) {
+            offsetY = (int) ((screenHeightScaled - appSize.height) / 2);
+        }
+
+        return new Point(offsetX, offsetY);
+    }
+
+    /**
+     * Convert a point relative to the screen to a point in the driver coordinate space
+     */
+    public static Point toAbsolutePoint(double relativePointX, double relativePointY, Point screenSize, double retinaScale) {
+        if (retinaScale > 1) {
+            return new Point((int) Math.round(relativePointX * screenSize.x / retinaScale), (int) Math.round(relativePointY * screenSize.y / retinaScale));
+        } else {
+            return new Point((int) Math.round(relativePointX * screenSize.x), (int) Math.round(relativePointY * screenSize.y));
+        }
+    }
+
+    /**
+     * Convert a point relative to a native rect to a point in the driver coordinate space
+     */
+    public static Point toAbsolutePoint(double relativePointX, double relativePointY, Rectangle rect, Point appOffset) {
+        double x = rect.x + rect.width * relativePointX + appOffset.x;
+        double y = rect.y + rect.height * relativePointY + appOffset.y;
+        return new Point((int) x, (int) y);
+    }
+
+    /**
+     * Move a point by an offset relative to the screen size, clamped to the top left edges
+     */
+    public static Point offsetPoint(Point fromPoint, double relativeOffsetX, double relativeOffsetY, Point screenSize) {
+        double toX = fromPoint.x + relativeOffsetX * screenSize.x;
+        double toY = fromPoint.y + relativeOffsetY * screenSize.y;
+        toX = Math.max(toX, 0);
+        toY = Math.max(toY, 0);
+        return new Point((int) toX, (int) toY);
+    }
+
+    /**
+     * Read width and height from the IHDR chunk, which the PNG spec requires to be the first chunk
+     * @return null if the bytes do not start with a PNG header
+     */
+    public static Point readPngSize(byte[] bytes) {
+        if (bytes == null || bytes.length < PNG_HEADER_LENGTH) return null;
+
+        for (int i = 0; i < PNG_SIGNATURE.length; i++) {
+            if (bytes[i] != PNG_SIGNATURE[i]) return null;
+        }
+
+        if (bytes[12] != 'I' || bytes[13] != 'H' || bytes[14] != 'D' || bytes[15] != 'R') return null;
+
+        return new Point(readInt(bytes, 16), readInt(bytes, 20));
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ((bytes[offset] & 0xFF) << 24)
+            | ((bytes[offset + 1] & 0xFF) << 16)
+            | ((bytes[offset + 2] & 0xFF) << 8)
+            | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static byte[] decodeBase64Prefix(String base64, int length) {
+        StringBuilder prefix = new StringBuilder(length);
+        for (int i = 0; i < base64.length() && prefix.length() < length; i++) {
+            char c = base64.charAt(i);
+            if (!Character.isWhitespace(c)) prefix.append(c);
+        }
+
+        if (prefix.length() < length) return null;
+
+        try {
+            return Base64.getDecoder().decode(prefix.toString());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.kobiton.scriptlessautomation;
+
+import io.appium.java_client.MobileBy;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.openqa.selenium.By;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Page source helpers for scrolling through a native scrollable: fingerprint the visible children after each scroll,
+ * detect the end of the content, check the target locator locally and adapt the scroll distance.
+ */
+public class ScrollSearch {
+    public static final int MAX_SCROLLS = 10;
+    public static final int SETTLE_IN_MS = 500;
+    public static final double MIN_DISTANCE_RATIO = 0.2;
+    public static final double MAX_DISTANCE_RATIO = 0.9;
+
+    /**
+     * Leaf elements of a scrollable, with and without their positions
+     */
+    public static class Snapshot {
+        public final List<String> contents = new ArrayList<>();
+        public final List<String> positionedContents = new ArrayList<>();
+
+        /**
+         * Nothing moved since the previous snapshot, the end of the content is reached
+         */
+        public boolean isSameAs(Snapshot other) {
+            return other != null && positionedContents.equals(other.positionedContents);
+        }
+    }
+
+    public static Snapshot takeSnapshot(Document document, String scrollableXpath, boolean isIos) {
+        Snapshot snapshot = new Snapshot();
+        Element scrollable = null;
+        try {
+            scrollable = selectFirst(document, scrollableXpath, isIos);
+        } catch (Exception ignored) {
+        }
+
+        Elements elements = scrollable != null ? scrollable.getAllElements() : document.getAllElements();
+
+        for (Element element : elements) {
+            if (!element.children().isEmpty() || !isVisible(element, isIos)) continue;
+
+            String content;
+            String position;
+            if (isIos) {
+                content = String.join("|", element.tagName(), element.attr("name"), element.attr("label"), element.attr("value"));
+                position = element.attr("x") + "," + element.attr("y");
+            } else {
+                content = String.join("|", element.tagName(), element.attr("resource-id"), element.attr("text"), element.attr("content-desc"));
+                position = element.attr("bounds");
+            }
+
+            snapshot.contents.add(content);
+            snapshot.positionedContents.add(content + "@" + position);
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Fraction of the previous content which scrolled out, found by the longest overlap
+     * between the end of the previous snapshot and the start of the current one
+     * @return -1 if there is no overlap, some content might have been skipped
+     */
+    public static double measureShift(Snapshot previous, Snapshot current) {
+        List<String> before = previous.contents;
+        List<String> after = current.contents;
+        if (before.isEmpty()) return -1;
+
+        for (int overlap = Math.min(before.size(), after.size()); overlap > 0; overlap--) {
+            if (before.subList(before.size() - overlap, before.size()).equals(after.subList(0, overlap))) {
+                return (before.size() - overlap) / (double) before.size();
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Grow the distance while content barely moves, shrink it when content was skipped
+     */
+    public static double adaptDistance(double distance, double shift, int scrollableHeight) {
+        if (shift < 0) {
+            distance *= 0.7;
+        } else if (shift < 0.25) {
+            distance *= 1.5;
+        }
+
+        return Math.min(Math.max(distance, scrollableHeight * MIN_DISTANCE_RATIO), scrollableHeight * MAX_DISTANCE_RATIO);
+    }
+
+    /**
+     * Check the locators against a page source without a server call
+     * @return null when a locator cannot be evaluated locally
+     */
+    public static Boolean matchesLocally(Document document, boolean isIos, By... locators) {
+        boolean evaluated = true;
+        for (By locator : locators) {
+            String xpath = toXpath(locator, isIos);
+            if (xpath == null) {
+                evaluated = false;
+                continue;
+            }
+
+            try {
+                Element element = selectFirst(document, xpath, isIos);
+                if (element != null && isVisible(element, isIos)) return true;
+            } catch (Exception e) {
+                evaluated = false;
+            }
+        }
+
+        return evaluated ? false : null;
+    }
+
+    private static String toXpath(By locator, boolean isIos) {
+        String text = locator.toString();
+        int separatorIndex = text.indexOf(": ");
+        if (separatorIndex < 0) return null;
+
+        String value = text.substring(separatorIndex + 2);
+        if (locator instanceof By.ByXPath) return value;
+        if (value.contains("'")) return null;
+
+        if (locator instanceof By.ById) {
+            // The driver prefixes the app package to short Android ids, which is unknown here
+            if (!isIos && !value.contains(":id/")) return null;
+            return String.format(isIos ? "//*[@name='%s']" : "//*[@resource-id='%s']", value);
+        } else if (locator instanceof MobileBy.ByAccessibilityId) {
+            return String.format(isIos ? "//*[@name='%s']" : "//*[@content-desc='%s']", value);
+        } else if (locator instanceof By.ByClassName) {
+            return "//" + value;
+        }
+
+        return null;
+    }
+
+    private static Element selectFirst(Document document, String xpath, boolean isIos) {
+        if (xpath == null) return null;
+
+        Element element = document.selectXpath(xpath).first();
+        // Absolute iOS XPaths are generated without the root of the page source
+        if (element == null && isIos && xpath.startsWith("/") && !xpath.startsWith("//")) {
+            element = document.selectXpath(TestBase.IOS_XPATH_REDUNDANT_PREFIX + xpath).first();
+        }
+
+        return element;
+    }
+
+    private static boolean isVisible(Element element, boolean isIos) {
+        // iOS page source also lists cells outside of the viewport
+        return !isIos || !"false".equals(element.attr("visible"));
+    }
+}
@@ -0,0 +1,218 @@
+package com.kobiton.scriptlessautomation;
+
+import fi.iki.elonen.NanoHTTPD;
+import okhttp3.*;
+import org.springframework.util.SocketUtils;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how many concurrent device sessions one JVM can drive with platform threads and with virtual threads.
+ * Every simulated session runs the same blocking pattern as a generated test: a driver command through a local proxy
+ * to a remote Appium server (served in-process with a fixed latency), followed by a short sleep.
+ *
+ * Run: mvn test-compile exec:java -Dexec.mainClass=com.kobiton.scriptlessautomation.SessionCapacityBenchmark -Pvirtual-threads
+ * Options: -DlatencyInMs=200 -DsleepInMs=100 -DdurationInSeconds=20 -DsessionCounts=100,500,1000,2000,5000,10000
+ */
+public class SessionCapacityBenchmark {
+    public static void main(String[] args) throws Exception {
+        int latencyInMs = Integer.getInteger("latencyInMs", 200);
+        int sleepInMs = Integer.getInteger("sleepInMs", 100);
+        int durationInSeconds = Integer.getInteger("durationInSeconds", 20);
+        String[] sessionCounts = System.getProperty("sessionCounts", "100,500,1000,2000,5000,10000").split(",");
+
+        List<Boolean> modes = new ArrayList<>(Arrays.asList(false));
+        if (Utils.isVirtualThreadSupported()) {
+            modes.add(true);
+        } else {
+            System.out.println("Virtual threads are not supported by this JVM, run with Java 21+ to compare");
+        }
+
+        // The remote server is not part of the runner box, keep it as cheap as possible in both modes
+        FakeAppiumServer appiumServer = new FakeAppiumServer(latencyInMs, Utils.isVirtualThreadSupported());
+        System.out.println("mode     | sessions | sustained | commands/s | p50 ms | p99 ms | errors | peak threads | heap MB");
+        for (boolean virtual : modes) {
+            ForwardingProxy proxy = new ForwardingProxy(appiumServer.getServerUrl(), virtual);
+            for (String sessionCount : sessionCounts) {
+                Result result = run(Integer.parseInt(sessionCount.trim()), virtual, proxy.getServerUrl(), sleepInMs, durationInSeconds);
+                boolean sustained = result.errors == 0 && result.startFailures == 0 && result.p99InMs < latencyInMs * 3;
+                System.out.println(String.format("%-8s | %8s | %9s | %10.1f | %6s | %6s | %6s | %12s | %7s",
+                    virtual ? "virtual" : "platform",
+                    result.sessions,
+                    sustained,
+                    result.commandsPerSecond,
+                    result.p50InMs,
+                    result.p99InMs,
+                    result.errors + result.startFailures,
+                    result.peakThreads,
+                    result.heapUsedInMb));
+                if (!sustained) break;
+            }
+
+            proxy.stop();
+        }
+
+        appiumServer.stop();
+    }
+
+    private static Result run(int sessions, boolean virtual, String proxyUrl, int sleepInMs, int durationInSeconds) throws InterruptedException {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        threadMXBean.resetPeakThreadCount();
+        System.gc();
+
+        OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(sessions, 1, TimeUnit.MINUTES))
+            .readTimeout(60, TimeUnit.SECONDS)
+            .build();
+        Request request = new Request.Builder().url(proxyUrl + "/session/benchmark/element").get().build();
+
+        long deadline = System.currentTimeMillis() + durationInSeconds * 1000L;
+        LatencyRecorder recorder = new LatencyRecorder();
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch doneLatch = new CountDownLatch(sessions);
+        int startFailures = 0;
+
+        for (int i = 0; i < sessions; i++) {
+            Runnable session = () -> {
+                try {
+                    while (System.currentTimeMillis() < deadline) {
+                        long startedAt = System.nanoTime();
+                        try (Response response = httpClient.newCall(request).execute()) {
+                            response.body().string();
+                            recorder.record((System.nanoTime() - startedAt) / 1000000);
+                        } catch (Exception e) {
+                            errors.incrementAndGet();
+                        }
+
+                        Thread.sleep(sleepInMs);
+                    }
+                } catch (InterruptedException ignored) {
+                } finally {
+                    doneLatch.countDown();
+                }
+            };
+
+            try {
+                Utils.newThread("session-" + i, session, virtual).start();
+            } catch (Throwable e) {
+                // Typically "unable to create native thread" once platform threads run out
+                startFailures++;
+                doneLatch.countDown();
+            }
+        }
+
+        doneLatch.await();
+
+        Result result = new Result();
+        result.sessions = sessions;
+        result.startFailures = startFailures;
+        result.errors = errors.get();
+        result.commandsPerSecond = recorder.count() / (double) durationInSeconds;
+        result.p50InMs = recorder.percentile(50);
+        result.p99InMs = recorder.percentile(99);
+        result.peakThreads = threadMXBean.getPeakThreadCount();
+        Runtime runtime = Runtime.getRuntime();
+        result.heapUsedInMb = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+
+        httpClient.connectionPool().evictAll();
+        return result;
+    }
+
+    public static class Result {
+        public int sessions, startFailures, peakThreads;
+        public long errors, p50InMs, p99InMs, heapUsedInMb;
+        public double commandsPerSecond;
+    }
+
+    /**
+     * Histogram of latencies with 1 ms buckets up to 60 seconds
+     */
+    private static class LatencyRecorder {
+        private final long[] buckets = new long[60001];
+
+        synchronized void record(long latencyInMs) {
+            buckets[(int) Math.min(Math.max(latencyInMs, 0), buckets.length - 1)]++;
+        }
+
+        synchronized long count() {
+            long count = 0;
+            for (long bucket : buckets) count += bucket;
+            return count;
+        }
+
+        synchronized long percentile(int percent) {
+            long target = (long) Math.ceil(count() * percent / 100.0);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i];
+                if (seen >= target && seen > 0) return i;
+            }
+
+            return 0;
+        }
+    }
+
+    private static class FakeAppiumServer extends NanoHTTPD {
+        private final int latencyInMs;
+
+        FakeAppiumServer(int latencyInMs, boolean virtual) throws Exception {
+            super(SocketUtils.findAvailableTcpPort());
+            this.latencyInMs = latencyInMs;
+            setAsyncRunner(new ProxyServer.ThreadPerRequestAsyncRunner(virtual));
+            start(60000, false);
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            try {
+                Thread.sleep(latencyInMs);
+            } catch (InterruptedException ignored) {
+            }
+
+            return newFixedLengthResponse(Response.Status.OK, "application/json", "{\"value\":{\"ELEMENT\":\"1\"}}");
+        }
+
+        String getServerUrl() {
+            return "http://localhost:" + getListeningPort();
+        }
+    }
+
+    /**
+     * Same request path as ProxyServer: NanoHTTPD in, OkHttp out, without the Kobiton specific handling
+     */
+    private static class ForwardingProxy extends NanoHTTPD {
+        private final String targetUrl;
+        private final OkHttpClient httpClient = new OkHttpClient.Builder()
+            .connectionPool(new ConnectionPool(20000, 1, TimeUnit.MINUTES))
+            .readTimeout(60, TimeUnit.SECONDS)
+            .build();
+
+        ForwardingProxy(String targetUrl, boolean virtual) throws Exception {
+            super(SocketUtils.findAvailableTcpPort());
+            this.targetUrl = targetUrl;
+            setAsyncRunner(new ProxyServer.ThreadPerRequestAsyncRunner(virtual));
+            start(60000, false);
+        }
+
+        @Override
+        public Response serve(IHTTPSession session) {
+            Request request = new Request.Builder().url(targetUrl + session.getUri()).get().build();
+            try (okhttp3.Response response = httpClient.newCall(request).execute()) {
+                return newFixedLengthResponse(Response.Status.OK, "application/json", response.body().string());
+            } catch (Exception e) {
+                return newFixedLengthResponse(Response.Status.INTERNAL_ERROR, "text/plain", e.getMessage());
+            }
+        }
+
+        String getServerUrl() {
+            return "http://localhost:" + getListeningPort();
+        }
+    }
+}
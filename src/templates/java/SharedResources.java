@@ -0,0 +1,84 @@
+package com.kobiton.scriptlessautomation;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread safe objects shared by every device session of the JVM: JSON mapping, the HTTP connection pool and the
+ * Kobiton API responses which are the same for every session. The driver, proxy, OTP resources and screen caches
+ * of a session stay in its own TestBase.
+ */
+public class SharedResources {
+    public static final Gson GSON = new GsonBuilder().disableHtmlEscaping().create();
+    // One idle connection per session, so parallel sessions do not reconnect to the same host on every command
+    public static final OkHttpClient HTTP_CLIENT = new OkHttpClient.Builder()
+        .connectionPool(new ConnectionPool(Math.max(Config.MAX_PARALLEL_SESSIONS, 5), 5, TimeUnit.MINUTES))
+        .build();
+    // Online devices change while sessions book them, long enough to share one response between concurrent setups
+    public static final long DEVICE_INVENTORY_TTL_IN_MS = 5000;
+    // Download URLs are signed and expire, only setups close in time share one
+    public static final long APP_URL_TTL_IN_MS = 5000;
+
+    // Download URLs by app version id
+    public static final Cache<Integer, String> APP_URLS = new Cache<>(APP_URL_TTL_IN_MS);
+    // Device list responses by request URL
+    public static final Cache<String, TestBase.DeviceListResponse> DEVICE_INVENTORY = new Cache<>(DEVICE_INVENTORY_TTL_IN_MS);
+
+    /**
+     * Values loaded once per key for all threads, concurrent callers of a missing key wait for the same load.
+     * A failed load is not kept, the next caller loads again.
+     */
+    public static class Cache<K, V> {
+        private final long ttlInMs;
+        private final ConcurrentHashMap<K, Entry<V>> entries = new ConcurrentHashMap<>();
+
+        /**
+         * @param ttlInMs time a value is kept, 0 to keep it for the whole run
+         */
+        public Cache(long ttlInMs) {
+            this.ttlInMs = ttlInMs;
+        }
+
+        public V get(K key, Utils.Task<V> loader) throws Exception {
+            Entry<V> entry = new Entry<>();
+            while (true) {
+                Entry<V> current = entries.putIfAbsent(key, entry);
+                if (current == null) break;
+                if (!current.isExpired(ttlInMs)) return Utils.await(current.value);
+
+                entries.remove(key, current);
+            }
+
+            try {
+                entry.value.complete(loader.exec(1));
+                entry.loadedAt = System.currentTimeMillis();
+            } catch (Throwable e) {
+                // Errors too, otherwise the waiting callers would never be released
+                entries.remove(key, entry);
+                entry.value.completeExceptionally(e);
+            }
+
+            return Utils.await(entry.value);
+        }
+
+        public void clear() {
+            entries.clear();
+        }
+    }
+
+    private static class Entry<V> {
+        final CompletableFuture<V> value = new CompletableFuture<>();
+        // 0 while loading
+        volatile long loadedAt;
+
+        boolean isExpired(long ttlInMs) {
+            return ttlInMs > 0 && loadedAt > 0 && System.currentTimeMillis() - loadedAt > ttlInMs;
+        }
+    }
+}
@@ -0,0 +1,661 @@
+package com.kobiton.scriptlessautomation;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import fi.iki.elonen.NanoHTTPD;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+
+import javax.imageio.ImageIO;
+import javax.xml.namespace.QName;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathFactory;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Stand-in for the Appium server and the Kobiton API, to load and profile generated tests without devices.
+ * Recorded page sources (*.xml, with an optional screenshot of the same name in .png) of -Dkobiton.simulator.sourcesDir
+ * are the screens of the app in name order: a lookup is answered from the current screen, or from the next screen
+ * having the element which then becomes current, like the app moving on. Elements of the previous screens are stale.
+ * Without recorded sources every locator matches one element in the middle of the screen.
+ * Each response is delayed by a latency drawn from the random generator of its session, seeded by the session order
+ * and -Dkobiton.simulator.seed, so the same run gets the same delays.
+ *
+ * Run: mvn test-compile exec:java -Dexec.mainClass=com.kobiton.scriptlessautomation.SimulatedAppiumServer -Dkobiton.simulator.sourcesDir=<dir>
+ * then the tests with -Dkobiton.appiumServerUrl=http://localhost:4723/wd/hub -Dkobiton.apiUrl=http://localhost:4723
+ * Options: -Dkobiton.simulator.port=4723 -Dkobiton.simulator.latency=lognormal:150:0.5, by kind of command with
+ * -Dkobiton.simulator.latency.find (.source, .screenshot, .action). Latencies are fixed:<ms>, uniform:<min>:<max>,
+ * normal:<mean>:<deviation> or lognormal:<median>:<sigma>.
+ */
+public class SimulatedAppiumServer extends NanoHTTPD {
+    public static final int PORT = Integer.getInteger("kobiton.simulator.port", 4723);
+    public static final String SOURCES_DIR = System.getProperty("kobiton.simulator.sourcesDir");
+    public static final long SEED = Long.getLong("kobiton.simulator.seed", 1);
+    public static final String ELEMENT_KEY = "element-6066-11e4-a52e-4f735466cecf";
+
+    enum COMMAND_KINDS {FIND, SOURCE, SCREENSHOT, ACTION, OTHER}
+
+    private static final Pattern SESSION_PATH = Pattern.compile("^/session/([^/]+)(/.*)?$");
+    private static final Pattern ELEMENT_PATH = Pattern.compile("^/element/([^/]+)(/.*)?$");
+    private static final Pattern APP_URL_PATH = Pattern.compile("^/v1/app/versions/([^/]+)/downloadUrl$");
+    private static final Pattern ANDROID_BOUNDS = Pattern.compile("\\[(-?\\d+),(-?\\d+)]\\[(-?\\d+),(-?\\d+)]");
+    private static final ThreadLocal<XPath> XPATHS = ThreadLocal.withInitial(() -> XPathFactory.newInstance().newXPath());
+    // Blank screenshots by size, only the PNG header matters to the tests
+    private static final Map<String, String> BLANK_SCREENSHOTS = new ConcurrentHashMap<>();
+
+    private final List<Screen> screens;
+    private final Map<COMMAND_KINDS, Latency> latencies = new EnumMap<>(COMMAND_KINDS.class);
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<COMMAND_KINDS, AtomicLong> commandCounts = new EnumMap<>(COMMAND_KINDS.class);
+    private final AtomicLong sessionCount = new AtomicLong();
+    private final Random apiRandom = new Random(SEED);
+
+    public static void main(String[] args) throws Exception {
+        SimulatedAppiumServer server = new SimulatedAppiumServer(PORT, loadScreens(SOURCES_DIR));
+        server.start(15 * 60 * 1000, false);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            Log.info("Simulated {} sessions, commands: {}", server.sessionCount.get(), server.commandCounts);
+            Log.flush();
+        }));
+        Log.info("Simulated Appium server is listening at {}/wd/hub with {} recorded screens, latencies: {}",
+            server.getServerUrl(), server.screens.size(), server.latencies);
+    }
+
+    public SimulatedAppiumServer(int port, List<Screen> screens) {
+        super(port);
+        this.screens = screens;
+        setAsyncRunner(new ProxyServer.ThreadPerRequestAsyncRunner(Utils.isVirtualThreadEnabled()));
+
+        Latency defaultLatency = Latency.parse(System.getProperty("kobiton.simulator.latency", "fixed:0"));
+        for (COMMAND_KINDS kind : COMMAND_KINDS.values()) {
+            String spec = System.getProperty("kobiton.simulator.latency." + kind.name().toLowerCase());
+            latencies.put(kind, spec != null ? Latency.parse(spec) : defaultLatency);
+            commandCounts.put(kind, new AtomicLong());
+        }
+    }
+
+    /**
+     * Recorded screens of the directory in name order, none when it is not set
+     */
+    public static List<Screen> loadScreens(String dirPath) throws Exception {
+        List<Screen> screens = new ArrayList<>();
+        if (dirPath == null) return screens;
+
+        File[] files = new File(dirPath).listFiles((dir, name) -> name.endsWith(".xml"));
+        if (files == null) {
+            throw new IllegalArgumentException("Cannot read recorded sources at " + dirPath);
+        }
+
+        Arrays.sort(files);
+        for (File file : files) {
+            File screenshotFile = new File(file.getParentFile(), file.getName().replaceAll("\\.xml$", ".png"));
+            String screenshot = screenshotFile.exists() ? Base64.getEncoder().encodeToString(Files.readAllBytes(screenshotFile.toPath())) : null;
+            screens.add(new Screen(file.getName(), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8), screenshot));
+        }
+
+        return screens;
+    }
+
+    public String getServerUrl() {
+        return "http://localhost:" + getListeningPort();
+    }
+
+    @Override
+    public Response serve(IHTTPSession httpSession) {
+        String uri = httpSession.getUri().startsWith("/wd/hub") ? httpSession.getUri().substring("/wd/hub".length()) : httpSession.getUri();
+        try {
+            String body = readBody(httpSession);
+            if (uri.startsWith("/v1/")) {
+                sleep(latencies.get(COMMAND_KINDS.OTHER), apiRandom);
+                return serveApi(uri, httpSession.getParameters());
+            }
+
+            if ("/status".equals(uri)) {
+                return json(Response.Status.OK, value(gsonTree(Collections.singletonMap("ready", true))), null);
+            }
+
+            if ("/session".equals(uri) && httpSession.getMethod() == Method.POST) {
+                return newSession(body);
+            }
+
+            Matcher matcher = SESSION_PATH.matcher(uri);
+            Session session = matcher.matches() ? sessions.get(matcher.group(1)) : null;
+            if (session == null) {
+                return error(Response.Status.NOT_FOUND, "invalid session id", "No simulated session for " + uri, null);
+            }
+
+            String path = matcher.group(2) != null ? matcher.group(2) : "";
+            if (path.isEmpty() && httpSession.getMethod() == Method.DELETE) {
+                sessions.remove(session.id);
+                return json(Response.Status.OK, value(null), null);
+            }
+
+            COMMAND_KINDS kind = getKind(httpSession.getMethod(), path);
+            commandCounts.get(kind).incrementAndGet();
+            sleep(latencies.get(kind), session.random);
+            synchronized (session) {
+                return serveCommand(session, httpSession.getMethod(), path, body);
+            }
+        } catch (Exception e) {
+            Log.warn("Cannot simulate {} {}", httpSession.getMethod(), uri, e);
+            return error(Response.Status.INTERNAL_ERROR, "unknown error", String.valueOf(e.getMessage()), null);
+        }
+    }
+
+    private Response newSession(String body) {
+        JsonObject request = body != null ? SharedResources.GSON.fromJson(body, JsonObject.class) : new JsonObject();
+        JsonObject capabilities = new JsonObject();
+        if (request.has("desiredCapabilities")) {
+            mergeInto(capabilities, request.getAsJsonObject("desiredCapabilities"));
+        }
+        if (request.has("capabilities") && request.getAsJsonObject("capabilities").has("alwaysMatch")) {
+            mergeInto(capabilities, request.getAsJsonObject("capabilities").getAsJsonObject("alwaysMatch"));
+        }
+
+        long index = sessionCount.incrementAndGet();
+        Session session = new Session(UUID.randomUUID().toString(), index, new Random(SEED * 31 + index));
+        sessions.put(session.id, session);
+        Log.debug("Start simulated session {} with {}", session.id, capabilities);
+
+        JsonObject value = new JsonObject();
+        value.addProperty("sessionId", session.id);
+        // Read by ProxyServer like from the Kobiton server
+        value.addProperty("kobitonSessionId", session.kobitonSessionId);
+        value.add("capabilities", capabilities);
+        return json(Response.Status.OK, value(value), session.context);
+    }
+
+    private Response serveCommand(Session session, Method method, String path, String body) throws Exception {
+        JsonObject request = body != null && !body.isEmpty() ? SharedResources.GSON.fromJson(body, JsonObject.class) : new JsonObject();
+        Screen screen = getScreen(session);
+
+        if ("/timeouts".equals(path) && method == Method.POST) {
+            if (request.has("implicit")) session.implicitWaitInMs = request.get("implicit").getAsInt();
+            if (request.has("type") && "implicit".equals(request.get("type").getAsString())) session.implicitWaitInMs = request.get("ms").getAsInt();
+            return ok(session, null);
+        }
+
+        if ("/element".equals(path) || "/elements".equals(path)) {
+            return findElements(session, null, request, "/elements".equals(path));
+        }
+
+        Matcher elementMatcher = ELEMENT_PATH.matcher(path);
+        if (elementMatcher.matches()) {
+            SimulatedElement element = session.elements.get(elementMatcher.group(1));
+            if (element == null || element.screenIndex != session.screenIndex) {
+                return error(Response.Status.NOT_FOUND, "stale element reference", "The element is not on the current screen", session.context);
+            }
+
+            String elementPath = elementMatcher.group(2) != null ? elementMatcher.group(2) : "";
+            if ("/element".equals(elementPath) || "/elements".equals(elementPath)) {
+                return findElements(session, element, request, "/elements".equals(elementPath));
+            }
+
+            return serveElementCommand(session, element, elementPath);
+        }
+
+        switch (path) {
+            case "/source":
+                return ok(session, screen != null ? screen.source : buildDefaultSource());
+            case "/screenshot":
+                return ok(session, screen != null && screen.screenshot != null ? screen.screenshot : getBlankScreenshot(getScreenSize(screen)));
+            case "/window/rect":
+            case "/window/current/size":
+            case "/window/size":
+                int[] size = getScreenSize(screen);
+                Map<String, Integer> rect = new LinkedHashMap<>();
+                rect.put("x", 0);
+                rect.put("y", 0);
+                rect.put("width", size[0]);
+                rect.put("height", size[1]);
+                return ok(session, rect);
+            case "/contexts":
+                return ok(session, Collections.singletonList(TestBase.NATIVE_CONTEXT));
+            case "/context":
+                if (method == Method.POST) {
+                    String name = request.get("name").getAsString();
+                    if (!TestBase.NATIVE_CONTEXT.equals(name)) {
+                        return error(Response.Status.NOT_FOUND, "no such context", "Only the native context is simulated", session.context);
+                    }
+                    session.context = name;
+                    return ok(session, null);
+                }
+                return ok(session, session.context);
+            case "/orientation":
+                if (method == Method.POST) {
+                    session.orientation = request.get("orientation").getAsString();
+                    return ok(session, null);
+                }
+                return ok(session, session.orientation);
+            case "/appium/device/is_keyboard_shown":
+            case "/appium/device/is_locked":
+                return ok(session, false);
+            case "/appium/settings":
+                return ok(session, method == Method.GET ? Collections.emptyMap() : null);
+            default:
+                // Gestures, key presses, typing, app and location commands only have to succeed
+                return ok(session, null);
+        }
+    }
+
+    private Response serveElementCommand(Session session, SimulatedElement element, String path) {
+        Screen screen = getScreen(session);
+        int[] rect = element.node != null ? getRect(screen, element.node) : getDefaultRect(getScreenSize(screen));
+        if ("/rect".equals(path) || "/location".equals(path) || "/size".equals(path)) {
+            Map<String, Integer> value = new LinkedHashMap<>();
+            value.put("x", rect[0]);
+            value.put("y", rect[1]);
+            value.put("width", rect[2]);
+            value.put("height", rect[3]);
+            return ok(session, value);
+        }
+
+        if (path.startsWith("/attribute/")) {
+            return ok(session, getAttribute(screen, element.node, path.substring("/attribute/".length())));
+        }
+
+        switch (path) {
+            case "/text":
+                String text = getAttribute(screen, element.node, "text");
+                return ok(session, text != null ? text : getAttribute(screen, element.node, "label"));
+            case "/name":
+                return ok(session, element.node != null ? element.node.getNodeName() : "android.view.View");
+            case "/displayed":
+            case "/enabled":
+                return ok(session, rect[2] > 0 && rect[3] > 0);
+            default:
+                // Clicks, values and clears only have to succeed
+                return ok(session, null);
+        }
+    }
+
+    private Response findElements(Session session, SimulatedElement root, JsonObject request, boolean isMultiple) throws Exception {
+        String using = request.get("using").getAsString();
+        String value = request.get("value").getAsString();
+        String expression = toXPath(using, value);
+        if (expression == null) {
+            return error(Response.Status.BAD_REQUEST, "invalid selector", "Locator strategy is not simulated: " + using, session.context);
+        }
+
+        List<SimulatedElement> found = new ArrayList<>();
+        if (screens.isEmpty()) {
+            found.add(session.addElement(null));
+        } else if (root != null) {
+            found.addAll(evaluate(session, session.screenIndex, root.node, expression, value));
+        } else {
+            // The current screen first, then the next ones as if the app moved on
+            for (int i = 0; i < screens.size() && found.isEmpty(); i++) {
+                int screenIndex = (session.screenIndex + i) % screens.size();
+                found.addAll(evaluate(session, screenIndex, null, expression, value));
+            }
+        }
+
+        if (found.isEmpty()) {
+            // Appium keeps looking for the implicit wait before it gives up
+            Thread.sleep(session.implicitWaitInMs);
+            if (isMultiple) return ok(session, Collections.emptyList());
+            return error(Response.Status.NOT_FOUND, "no such element", "Cannot find element by " + using + " " + value, session.context);
+        }
+
+        if (!isMultiple) return ok(session, found.get(0).toReference());
+
+        List<Map<String, String>> references = new ArrayList<>();
+        for (SimulatedElement element : found) {
+            references.add(element.toReference());
+        }
+        return ok(session, references);
+    }
+
+    private List<SimulatedElement> evaluate(Session session, int screenIndex, Node root, String expression, String value) throws Exception {
+        Screen screen = screens.get(screenIndex);
+        XPath xpath = XPATHS.get();
+        xpath.setXPathVariableResolver((QName name) -> value);
+
+        NodeList nodes;
+        // DOM reads of a document are not thread safe
+        synchronized (screen) {
+            nodes = (NodeList) xpath.evaluate(expression, root != null ? root : screen.document, XPathConstants.NODESET);
+        }
+
+        List<SimulatedElement> elements = new ArrayList<>();
+        if (nodes.getLength() > 0 && screenIndex != session.screenIndex) {
+            Log.debug("Simulated session {} moves to screen {}", session.id, screen.name);
+            session.moveTo(screenIndex);
+        }
+
+        for (int i = 0; i < nodes.getLength(); i++) {
+            elements.add(session.addElement(nodes.item(i)));
+        }
+        return elements;
+    }
+
+    /**
+     * XPath matching the locator, the value is bound to $value. Null for strategies which are not simulated
+     */
+    private static String toXPath(String using, String value) {
+        switch (using) {
+            case "xpath":
+                return value;
+            case "id":
+                return ".//*[@resource-id=$value or @id=$value or @name=$value or substring-after(@resource-id, ':id/')=$value]";
+            case "accessibility id":
+                return ".//*[@content-desc=$value or @name=$value or @label=$value]";
+            case "name":
+                return ".//*[@name=$value or @text=$value]";
+            case "class name":
+                return ".//*[@class=$value or local-name()=$value]";
+            default:
+                return null;
+        }
+    }
+
+    private Response serveApi(String uri, Map<String, List<String>> params) {
+        if ("/v1/devices".equals(uri)) {
+            Map<String, Object> device = new LinkedHashMap<>();
+            device.put("id", 1);
+            device.put("deviceName", getParameter(params, "deviceName", "Simulated device"));
+            device.put("platformName", getParameter(params, "platformName", "Android"));
+            device.put("platformVersion", getParameter(params, "platformVersion", "1"));
+            device.put("udid", "simulated");
+            device.put("isOnline", true);
+            device.put("isBooked", false);
+            device.put("isCloud", true);
+
+            Map<String, Object> devices = new LinkedHashMap<>();
+            devices.put("cloudDevices", Collections.singletonList(device));
+            devices.put("privateDevices", Collections.emptyList());
+            devices.put("favoriteDevices", Collections.emptyList());
+            return json(Response.Status.OK, SharedResources.GSON.toJson(devices), null);
+        }
+
+        Matcher matcher = APP_URL_PATH.matcher(uri);
+        if (matcher.matches()) {
+            String url = String.format("%s/apps/%s", getServerUrl(), matcher.group(1));
+            return json(Response.Status.OK, SharedResources.GSON.toJson(Collections.singletonMap("url", url)), null);
+        }
+
+        return json(Response.Status.NOT_FOUND, SharedResources.GSON.toJson(Collections.singletonMap("message", "Not simulated: " + uri)), null);
+    }
+
+    /**
+     * First value of a query parameter
+     */
+    private static String getParameter(Map<String, List<String>> params, String name, String defaultValue) {
+        List<String> values = params.get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : defaultValue;
+    }
+
+    private static COMMAND_KINDS getKind(Method method, String path) {
+        if (path.endsWith("/element") || path.endsWith("/elements")) return COMMAND_KINDS.FIND;
+        if (path.equals("/source")) return COMMAND_KINDS.SOURCE;
+        if (path.equals("/screenshot")) return COMMAND_KINDS.SCREENSHOT;
+        if (method == Method.POST && !path.equals("/timeouts") && !path.equals("/context") && !path.equals("/appium/settings")) {
+            return COMMAND_KINDS.ACTION;
+        }
+        return COMMAND_KINDS.OTHER;
+    }
+
+    private Screen getScreen(Session session) {
+        return screens.isEmpty() ? null : screens.get(session.screenIndex);
+    }
+
+    private static String getAttribute(Screen screen, Node node, String name) {
+        if (!(node instanceof Element)) return null;
+
+        synchronized (screen) {
+            Element element = (Element) node;
+            return element.hasAttribute(name) ? element.getAttribute(name) : null;
+        }
+    }
+
+    /**
+     * x, y, width and height of the node from the Android bounds or the iOS frame attributes
+     */
+    private static int[] getRect(Screen screen, Node node) {
+        String bounds = getAttribute(screen, node, "bounds");
+        if (bounds != null) {
+            Matcher matcher = ANDROID_BOUNDS.matcher(bounds);
+            if (matcher.matches()) {
+                int x1 = Integer.parseInt(matcher.group(1)), y1 = Integer.parseInt(matcher.group(2));
+                return new int[]{x1, y1, Integer.parseInt(matcher.group(3)) - x1, Integer.parseInt(matcher.group(4)) - y1};
+            }
+        }
+
+        String width = getAttribute(screen, node, "width");
+        if (width != null) {
+            return new int[]{
+                parseInt(getAttribute(screen, node, "x")),
+                parseInt(getAttribute(screen, node, "y")),
+                parseInt(width),
+                parseInt(getAttribute(screen, node, "height"))
+            };
+        }
+
+        return new int[]{0, 0, 0, 0};
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return value != null ? (int) Double.parseDouble(value) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Width and height of the screen from the root of the source, a phone screen when unknown
+     */
+    private static int[] getScreenSize(Screen screen) {
+        if (screen == null) return new int[]{1080, 1920};
+
+        Element root = screen.document.getDocumentElement();
+        int[] rect = getRect(screen, root);
+        for (Node child = root.getFirstChild(); rect[2] <= 0 && child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) rect = getRect(screen, child);
+        }
+
+        return rect[2] > 0 && rect[3] > 0 ? new int[]{rect[2], rect[3]} : new int[]{1080, 1920};
+    }
+
+    private static int[] getDefaultRect(int[] screenSize) {
+        return new int[]{screenSize[0] / 4, screenSize[1] * 9 / 20, screenSize[0] / 2, screenSize[1] / 10};
+    }
+
+    private static String buildDefaultSource() {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?><hierarchy index=\"0\" class=\"hierarchy\" rotation=\"0\" width=\"1080\" height=\"1920\">" +
+            "<android.widget.FrameLayout index=\"0\" class=\"android.widget.FrameLayout\" bounds=\"[0,0][1080,1920]\"/></hierarchy>";
+    }
+
+    private static String getBlankScreenshot(int[] size) {
+        return BLANK_SCREENSHOTS.computeIfAbsent(size[0] + "x" + size[1], key -> {
+            try (ByteArrayOutputStream png = new ByteArrayOutputStream()) {
+                ImageIO.write(new BufferedImage(size[0], size[1], BufferedImage.TYPE_BYTE_GRAY), "png", png);
+                return Base64.getEncoder().encodeToString(png.toByteArray());
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot create blank screenshot", e);
+            }
+        });
+    }
+
+    private static void mergeInto(JsonObject target, JsonObject source) {
+        for (Map.Entry<String, JsonElement> entry : source.entrySet()) {
+            target.add(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static void sleep(Latency latency, Random random) throws InterruptedException {
+        long delayInMs;
+        synchronized (random) {
+            delayInMs = latency.next(random);
+        }
+        if (delayInMs > 0) Thread.sleep(delayInMs);
+    }
+
+    private static String readBody(IHTTPSession httpSession) throws Exception {
+        HashMap<String, String> bodyMap = new HashMap<>();
+        httpSession.parseBody(bodyMap);
+        return bodyMap.get("postData");
+    }
+
+    private static JsonElement gsonTree(Object value) {
+        return SharedResources.GSON.toJsonTree(value);
+    }
+
+    private static String value(JsonElement value) {
+        // Written by hand, GSON drops null members and W3C clients expect "value": null
+        return "{\"value\":" + (value != null ? SharedResources.GSON.toJson(value) : "null") + "}";
+    }
+
+    private Response ok(Session session, Object value) {
+        return json(Response.Status.OK, value(gsonTree(value)), session.context);
+    }
+
+    private Response error(Response.Status status, String error, String message, String context) {
+        JsonObject value = new JsonObject();
+        value.addProperty("error", error);
+        value.addProperty("message", message);
+        value.addProperty("stacktrace", "");
+        return json(status, value(value), context);
+    }
+
+    private Response json(Response.Status status, String body, String context) {
+        Response response = newFixedLengthResponse(status, "application/json; charset=utf-8", body);
+        // Like the Kobiton server, so the proxy can follow the context without asking
+        if (context != null) response.addHeader(ProxyServer.CONTEXT_HEADER, context);
+        return response;
+    }
+
+    /**
+     * Delay of a response in ms, e.g. "fixed:100", "uniform:50:250", "normal:200:40" or "lognormal:150:0.5"
+     */
+    public static class Latency {
+        private final String spec;
+        private final String type;
+        private final double first, second;
+
+        Latency(String spec, String type, double first, double second) {
+            this.spec = spec;
+            this.type = type;
+            this.first = first;
+            this.second = second;
+        }
+
+        public static Latency parse(String spec) {
+            String[] parts = spec.trim().split(":");
+            switch (parts[0]) {
+                case "fixed":
+                    return new Latency(spec, parts[0], Double.parseDouble(parts[1]), 0);
+                case "uniform":
+                case "normal":
+                case "lognormal":
+                    return new Latency(spec, parts[0], Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                default:
+                    throw new IllegalArgumentException("Unknown latency " + spec);
+            }
+        }
+
+        long next(Random random) {
+            double delay;
+            switch (type) {
+                case "uniform":
+                    delay = first + random.nextDouble() * (second - first);
+                    break;
+                case "normal":
+                    delay = first + random.nextGaussian() * second;
+                    break;
+                case "lognormal":
+                    delay = first * Math.exp(random.nextGaussian() * second);
+                    break;
+                default:
+                    delay = first;
+            }
+
+            return Math.max(Math.round(delay), 0);
+        }
+
+        @Override
+        public String toString() {
+            return spec;
+        }
+    }
+
+    /**
+     * One recorded page source of the app
+     */
+    public static class Screen {
+        final String name, source, screenshot;
+        final Document document;
+
+        Screen(String name, String source, String screenshot) throws Exception {
+            this.name = name;
+            this.source = source;
+            this.screenshot = screenshot;
+            this.document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(source)));
+        }
+    }
+
+    private static class Session {
+        final String id;
+        final long kobitonSessionId;
+        final Random random;
+        // Elements found on the current screen, the others are stale
+        final Map<String, SimulatedElement> elements = new HashMap<>();
+        int screenIndex, implicitWaitInMs;
+        long lastElementId;
+        String context = TestBase.NATIVE_CONTEXT;
+        String orientation = "PORTRAIT";
+
+        Session(String id, long kobitonSessionId, Random random) {
+            this.id = id;
+            this.kobitonSessionId = kobitonSessionId;
+            this.random = random;
+        }
+
+        void moveTo(int screenIndex) {
+            this.screenIndex = screenIndex;
+            elements.clear();
+        }
+
+        SimulatedElement addElement(Node node) {
+            SimulatedElement element = new SimulatedElement(String.valueOf(++lastElementId), screenIndex, node);
+            elements.put(element.id, element);
+            return element;
+        }
+    }
+
+    private static class SimulatedElement {
+        final String id;
+        final int screenIndex;
+        // Null without recorded sources
+        final Node node;
+
+        SimulatedElement(String id, int screenIndex, Node node) {
+            this.id = id;
+            this.screenIndex = screenIndex;
+            this.node = node;
+        }
+
+        Map<String, String> toReference() {
+            Map<String, String> reference = new LinkedHashMap<>();
+            reference.put(ELEMENT_KEY, id);
+            reference.put("ELEMENT", id);
+            return reference;
+        }
+    }
+}
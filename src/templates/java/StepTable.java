@@ -0,0 +1,93 @@
+package com.kobiton.scriptlessautomation;
+
+import com.google.gson.Gson;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Recorded steps of the test, generated as a table run by TestBase.runSteps. Locators of the steps are in Locators,
+ * under the same id. The table is read once per JVM on first use.
+ */
+public class StepTable {
+    public static final String RESOURCE_NAME = "steps.json";
+
+    enum COMMANDS {
+        ACTIVATE_APP, TOUCH_ON_ELEMENT, TOUCH_ON_SCROLLABLE_PARENT, TOUCH_AT_POINT, SWIPE_FROM_ELEMENT,
+        SWIPE_BY_POINTS, PRESS, SEND_KEYS, SEND_KEYS_WITH_DDT, ROTATE, SET_LOCATION, GENERATE_RANDOM_PHONE_NUMBER,
+        FIND_OTP_PHONE_NUMBER, FIND_OTP_EMAIL_ADDRESS, FIND_OTP_CODE
+    }
+
+    /**
+     * One recorded step, only the fields of its command are set
+     */
+    public static class Step {
+        public long id;
+        public COMMANDS command;
+        public boolean isWebContext, isOnKeyboard;
+        public int timeout, duration, count, length;
+        public double x, y, x1, y1, x2, y2;
+        public String value, appPackage, orientation, lat, lon, countryCode;
+        // Values typed on specific devices, for data driven steps
+        public List<DeviceValue> deviceValues;
+
+        /**
+         * The value to type on the device
+         */
+        public String getValue(String deviceName, String platformVersion) {
+            if (deviceValues != null) {
+                for (DeviceValue deviceValue : deviceValues) {
+                    if (deviceValue.deviceName.equals(deviceName) && deviceValue.platformVersion.equals(platformVersion)) {
+                        return deviceValue.value;
+                    }
+                }
+            }
+
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s", id, command);
+        }
+    }
+
+    public static class DeviceValue {
+        public String deviceName, platformVersion, value;
+    }
+
+    private static class Holder {
+        static final List<Step> steps = load();
+    }
+
+    public static List<Step> getSteps() {
+        return Holder.steps;
+    }
+
+    private static List<Step> load() {
+        InputStream inputStream = StepTable.class.getClassLoader().getResourceAsStream(RESOURCE_NAME);
+        if (inputStream == null) {
+            throw new IllegalStateException(String.format("Cannot find %s in the test resources", RESOURCE_NAME));
+        }
+
+        try (InputStreamReader reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8)) {
+            return read(reader);
+        } catch (Exception e) {
+            throw new IllegalStateException(String.format("Cannot load %s", RESOURCE_NAME), e);
+        }
+    }
+
+    /**
+     * Steps of a table in the steps.json format, e.g. to benchmark the loading
+     */
+    static List<Step> read(Reader reader) {
+        Step[] steps = new Gson().fromJson(reader, Step[].class);
+        return Collections.unmodifiableList(new ArrayList<>(Arrays.asList(steps)));
+    }
+}
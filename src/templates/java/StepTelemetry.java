@@ -0,0 +1,301 @@
+package com.kobiton.scriptlessautomation;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Time spent by each Kobiton command (step) of a test, split into context switches, element lookups, retry waits,
+ * gestures and fixed sleeps. At cleanup a JSON report and a folded-stack summary (one "stack time" line per path,
+ * readable by flamegraph.pl or speedscope) are written to reports/telemetry. Timings of all the sessions of the JVM
+ * are also summed up by device, see writeDeviceSummary.
+ */
+public class StepTelemetry {
+    public static final String REPORT_DIR = "reports/telemetry";
+    public static final String DEVICE_SUMMARY_FILE = "devices.json";
+
+    enum CATEGORIES {CONTEXT_SWITCH, ELEMENT_LOOKUP, RETRY, GESTURE, SLEEP}
+
+    private static final ThreadLocal<StepTelemetry> CURRENT = new ThreadLocal<>();
+    private static final Span NOOP_SPAN = new Span(null, null, 0);
+    private static final Map<String, DeviceTiming> DEVICE_TIMINGS = new ConcurrentHashMap<>();
+
+    private final long startedAt = System.currentTimeMillis();
+    private final Map<Long, StepTiming> steps = new LinkedHashMap<>();
+    // In nanoseconds, converted to milliseconds when written
+    private final Map<String, Long> foldedStacks = new LinkedHashMap<>();
+    private final Deque<Span> openSpans = new ArrayDeque<>();
+    private StepTiming currentStep;
+    private Thread owner;
+
+    /**
+     * Make it the telemetry of the current thread, so static helpers (e.g. Utils.retry) can record into it
+     */
+    public StepTelemetry attach() {
+        CURRENT.set(this);
+        owner = Thread.currentThread();
+        return this;
+    }
+
+    public static StepTelemetry current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Start a span on the telemetry of the current thread, a no-op span when there is none
+     */
+    public static Span startOnCurrent(CATEGORIES category) {
+        StepTelemetry telemetry = CURRENT.get();
+        return telemetry != null ? telemetry.start(category) : NOOP_SPAN;
+    }
+
+    public static void recordRetryOnCurrent() {
+        StepTelemetry telemetry = CURRENT.get();
+        if (telemetry != null) telemetry.getCurrentStep().retries++;
+    }
+
+    /**
+     * Close the running step and attribute everything after it to the given command id
+     */
+    public void startStep(long commandId) {
+        long now = System.nanoTime();
+        closeCurrentStep(now);
+        currentStep = steps.computeIfAbsent(commandId, StepTiming::new);
+        currentStep.startedAtNanos = now;
+    }
+
+    /**
+     * Start timing an operation, close it (try-with-resources) when it ends.
+     * Only the own time of a span is counted, time of nested spans goes to their own category.
+     */
+    public Span start(CATEGORIES category) {
+        // Only the thread that drives the test is attributed to steps, e.g. not background prefetches
+        if (Thread.currentThread() != owner) return NOOP_SPAN;
+
+        Span span = new Span(this, category, System.nanoTime());
+        openSpans.push(span);
+        return span;
+    }
+
+    /**
+     * Close the running step, write the report files and detach from the current thread
+     */
+    public void finish(String name) {
+        finish(name, name);
+    }
+
+    /**
+     * @param device name and version of the device, the timing is added to its summary
+     */
+    public void finish(String device, String name) {
+        closeCurrentStep(System.nanoTime());
+        if (CURRENT.get() == this) CURRENT.remove();
+        if (steps.isEmpty()) return;
+
+        for (StepTiming step : steps.values()) {
+            step.convertToMillis();
+        }
+        DEVICE_TIMINGS.computeIfAbsent(device, DeviceTiming::new).add(System.currentTimeMillis() - startedAt, steps.values());
+
+        File reportDir = new File(System.getProperty("user.dir"), REPORT_DIR);
+        String fileName = name.replaceAll("[^a-zA-Z0-9]", "_");
+        try {
+            Gson gson = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+            Report report = new Report();
+            report.name = name;
+            report.startedAt = startedAt;
+            report.durationInMs = System.currentTimeMillis() - startedAt;
+            report.steps = new ArrayList<>(steps.values());
+            FileUtils.writeStringToFile(new File(reportDir, fileName + ".json"), gson.toJson(report), StandardCharsets.UTF_8);
+
+            StringBuilder folded = new StringBuilder();
+            for (Map.Entry<String, Long> entry : foldedStacks.entrySet()) {
+                long inMs = entry.getValue() / 1000000;
+                if (inMs > 0) folded.append(entry.getKey()).append(' ').append(inMs).append('\n');
+            }
+            FileUtils.writeStringToFile(new File(reportDir, fileName + ".folded"), folded.toString(), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            Log.warn("Cannot save step telemetry", e);
+            return;
+        }
+
+        List<StepTiming> slowestSteps = new ArrayList<>(steps.values());
+        slowestSteps.sort((StepTiming s1, StepTiming s2) -> Long.compare(s2.durationInMs, s1.durationInMs));
+        for (StepTiming step : slowestSteps.subList(0, Math.min(slowestSteps.size(), 5))) {
+            Log.info("Slow step: command {} took {} ms {}", step.commandId, step.durationInMs, step.categoryInMs);
+        }
+        Log.info("Step telemetry is saved at {}", new File(reportDir, fileName + ".json").getAbsolutePath());
+    }
+
+    /**
+     * Log the timing of every device finished so far, slowest average step first, and write it to
+     * reports/telemetry/devices.json. Called once all the sessions of the run are done.
+     */
+    public static List<DeviceTiming> writeDeviceSummary() {
+        List<DeviceTiming> devices = new ArrayList<>(DEVICE_TIMINGS.values());
+        if (devices.isEmpty()) return devices;
+
+        devices.sort((DeviceTiming d1, DeviceTiming d2) -> Long.compare(d2.averageStepInMs, d1.averageStepInMs));
+        for (DeviceTiming device : devices) {
+            Log.info("Device {}: {} sessions, {} steps, {} ms per session, {} ms per step {}",
+                device.device, device.sessions, device.steps, device.averageSessionInMs, device.averageStepInMs, device.categoryInMs);
+        }
+
+        File summaryFile = new File(new File(System.getProperty("user.dir"), REPORT_DIR), DEVICE_SUMMARY_FILE);
+        try {
+            Gson gson = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+            FileUtils.writeStringToFile(summaryFile, gson.toJson(devices), StandardCharsets.UTF_8);
+            Log.info("Device timing summary is saved at {}", summaryFile.getAbsolutePath());
+        } catch (Exception e) {
+            Log.warn("Cannot save device timing summary", e);
+        }
+
+        return devices;
+    }
+
+    private StepTiming getCurrentStep() {
+        if (currentStep == null) startStep(0);
+        return currentStep;
+    }
+
+    private void closeCurrentStep(long now) {
+        if (currentStep == null) return;
+
+        // Spans left open by an exception thrown past them
+        while (!openSpans.isEmpty()) {
+            openSpans.peek().close();
+        }
+
+        long ownInNanos = now - currentStep.startedAtNanos - currentStep.spannedInNanos;
+        currentStep.durationInNanos += now - currentStep.startedAtNanos;
+        currentStep.unattributedInNanos += Math.max(ownInNanos, 0);
+        addFoldedStack(stepFrame(currentStep), ownInNanos);
+        currentStep.spannedInNanos = 0;
+        currentStep = null;
+    }
+
+    private void close(Span span, long now) {
+        if (!openSpans.remove(span)) return;
+
+        StepTiming step = getCurrentStep();
+        long elapsedInNanos = Math.max(now - span.startedAtNanos, 0);
+        long ownInNanos = Math.max(elapsedInNanos - span.childrenInNanos, 0);
+
+        Span parent = openSpans.peek();
+        if (parent != null) {
+            parent.childrenInNanos += elapsedInNanos;
+        } else {
+            step.spannedInNanos += elapsedInNanos;
+        }
+
+        step.categoryInNanos.merge(span.category, ownInNanos, Long::sum);
+
+        StringBuilder stack = new StringBuilder(stepFrame(step));
+        Iterator<Span> outerToInner = openSpans.descendingIterator();
+        while (outerToInner.hasNext()) {
+            stack.append(';').append(outerToInner.next().category);
+        }
+        stack.append(';').append(span.category);
+        addFoldedStack(stack.toString(), ownInNanos);
+    }
+
+    private void addFoldedStack(String stack, long inNanos) {
+        if (inNanos > 0) foldedStacks.merge(stack, inNanos, Long::sum);
+    }
+
+    private static String stepFrame(StepTiming step) {
+        return step.commandId > 0 ? "command " + step.commandId : "setup";
+    }
+
+    public static class Span implements AutoCloseable {
+        private final StepTelemetry telemetry;
+        private final CATEGORIES category;
+        private final long startedAtNanos;
+        private long childrenInNanos;
+
+        Span(StepTelemetry telemetry, CATEGORIES category, long startedAtNanos) {
+            this.telemetry = telemetry;
+            this.category = category;
+            this.startedAtNanos = startedAtNanos;
+        }
+
+        @Override
+        public void close() {
+            if (telemetry != null) telemetry.close(this, System.nanoTime());
+        }
+    }
+
+    public static class StepTiming {
+        public final long commandId;
+        public long durationInMs, unattributedInMs;
+        public int retries;
+        public final Map<CATEGORIES, Long> categoryInMs = new EnumMap<>(CATEGORIES.class);
+        // Summed in nanoseconds, so short spans are not lost to rounding
+        transient long startedAtNanos, spannedInNanos, durationInNanos, unattributedInNanos;
+        final transient Map<CATEGORIES, Long> categoryInNanos = new EnumMap<>(CATEGORIES.class);
+
+        StepTiming(long commandId) {
+            this.commandId = commandId;
+        }
+
+        void convertToMillis() {
+            durationInMs = durationInNanos / 1000000;
+            unattributedInMs = unattributedInNanos / 1000000;
+            categoryInMs.clear();
+            for (Map.Entry<CATEGORIES, Long> entry : categoryInNanos.entrySet()) {
+                categoryInMs.put(entry.getKey(), entry.getValue() / 1000000);
+            }
+        }
+    }
+
+    /**
+     * Timing of all the sessions run on one device model and version
+     */
+    public static class DeviceTiming {
+        public final String device;
+        public int sessions, steps, retries;
+        public long durationInMs, stepsInMs, averageSessionInMs, averageStepInMs;
+        public final Map<CATEGORIES, Long> categoryInMs = new EnumMap<>(CATEGORIES.class);
+        private transient long stepsInNanos;
+        private final transient Map<CATEGORIES, Long> categoryInNanos = new EnumMap<>(CATEGORIES.class);
+
+        DeviceTiming(String device) {
+            this.device = device;
+        }
+
+        synchronized void add(long sessionInMs, Collection<StepTiming> sessionSteps) {
+            sessions++;
+            durationInMs += sessionInMs;
+            for (StepTiming step : sessionSteps) {
+                // The setup before the first command is not a step
+                if (step.commandId > 0) {
+                    steps++;
+                    stepsInNanos += step.durationInNanos;
+                }
+
+                retries += step.retries;
+                for (Map.Entry<CATEGORIES, Long> entry : step.categoryInNanos.entrySet()) {
+                    categoryInNanos.merge(entry.getKey(), entry.getValue(), Long::sum);
+                }
+            }
+
+            stepsInMs = stepsInNanos / 1000000;
+            for (Map.Entry<CATEGORIES, Long> entry : categoryInNanos.entrySet()) {
+                categoryInMs.put(entry.getKey(), entry.getValue() / 1000000);
+            }
+            averageSessionInMs = durationInMs / sessions;
+            averageStepInMs = steps > 0 ? stepsInMs / steps : 0;
+        }
+    }
+
+    public static class Report {
+        public String name;
+        public long startedAt, durationInMs;
+        public List<StepTiming> steps;
+    }
+}
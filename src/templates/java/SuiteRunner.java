@@ -0,0 +1,273 @@
+package com.kobiton.scriptlessautomation;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Runs test cases on a fixed pool of workers, one worker per device session we can hold at the same time.
+ * Longest test cases (by previous timeline) are scheduled first, idle workers steal queued test cases
+ * from the busiest worker, and a queued/booking/running timeline is written for every test case.
+ */
+public class SuiteRunner {
+    public static final String TIMELINE_FILE = "reports/suite-timeline.json";
+
+    enum PHASE {QUEUED, BOOKING, RUNNING, FINISHED}
+
+    private static final ThreadLocal<TimelineEntry> CURRENT_ENTRY = new ThreadLocal<>();
+
+    private final int parallelism;
+    private final File timelineFile;
+    private final Gson gson = new GsonBuilder().disableHtmlEscaping().setPrettyPrinting().create();
+
+    public SuiteRunner(int parallelism) {
+        this(parallelism, new File(System.getProperty("user.dir"), TIMELINE_FILE));
+    }
+
+    public SuiteRunner(int parallelism, File timelineFile) {
+        this.parallelism = Math.max(parallelism, 1);
+        this.timelineFile = timelineFile;
+    }
+
+    /**
+     * Record that the test case running on the current thread entered a new phase,
+     * no-op when the test case is not run by a SuiteRunner
+     */
+    public static void markPhase(PHASE phase) {
+        TimelineEntry entry = CURRENT_ENTRY.get();
+        if (entry == null) return;
+
+        long now = System.currentTimeMillis();
+        switch (phase) {
+            case QUEUED:
+                entry.queuedAt = now;
+                break;
+            case BOOKING:
+                if (entry.bookingAt == 0) entry.bookingAt = now;
+                break;
+            case RUNNING:
+                if (entry.runningAt == 0) entry.runningAt = now;
+                break;
+            case FINISHED:
+                entry.finishedAt = now;
+                break;
+        }
+    }
+
+    public List<TimelineEntry> run(List<TestCase> testCases) throws InterruptedException {
+        Map<String, Long> previousDurations = loadPreviousDurations();
+        long defaultEstimate = (long) previousDurations.values().stream().mapToLong(Long::longValue).average().orElse(0);
+        for (TestCase testCase : testCases) {
+            testCase.estimatedDurationInMs = previousDurations.getOrDefault(testCase.name, defaultEstimate);
+        }
+
+        List<TestCase> sortedTestCases = new ArrayList<>(testCases);
+        sortedTestCases.sort((TestCase t1, TestCase t2) -> Long.compare(t2.estimatedDurationInMs, t1.estimatedDurationInMs));
+
+        int workerCount = Math.min(parallelism, Math.max(testCases.size(), 1));
+        List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(new Worker(i));
+        }
+
+        // Longest processing time first: give each test case to the worker with the least estimated work
+        long suiteStartedAt = System.currentTimeMillis();
+        List<TimelineEntry> timeline = Collections.synchronizedList(new ArrayList<>());
+        for (TestCase testCase : sortedTestCases) {
+            Worker worker = Collections.min(workers, Comparator.comparingLong(w -> w.assignedWorkInMs));
+            worker.queue.addLast(testCase);
+            worker.assignedWorkInMs += testCase.estimatedDurationInMs;
+            worker.remainingWorkInMs += testCase.estimatedDurationInMs;
+        }
+
+        Log.info("Run {} test cases on {} device sessions{}", testCases.size(), workerCount, Utils.isVirtualThreadEnabled() ? " (virtual threads)" : "");
+        CountDownLatch doneLatch = new CountDownLatch(workerCount);
+        for (Worker worker : workers) {
+            Thread thread = Utils.newThread("suite-worker-" + worker.index, () -> {
+                try {
+                    TestCase testCase;
+                    while ((testCase = worker.take(workers)) != null) {
+                        timeline.add(execute(worker, testCase, suiteStartedAt));
+                    }
+                } finally {
+                    doneLatch.countDown();
+                }
+            });
+            thread.start();
+        }
+
+        doneLatch.await();
+
+        List<TimelineEntry> sortedTimeline = new ArrayList<>(timeline);
+        sortedTimeline.sort(Comparator.comparingLong(entry -> entry.startedAt));
+        writeTimeline(sortedTimeline, suiteStartedAt);
+        return sortedTimeline;
+    }
+
+    private TimelineEntry execute(Worker worker, TestCase testCase, long suiteStartedAt) {
+        TimelineEntry entry = new TimelineEntry(testCase.name, worker.index);
+        entry.queuedAt = suiteStartedAt;
+        entry.startedAt = System.currentTimeMillis();
+        entry.estimatedDurationInMs = testCase.estimatedDurationInMs;
+        CURRENT_ENTRY.set(entry);
+
+        Log.info("Worker {} starts {}", worker.index, testCase.name);
+        try {
+            entry.passed = testCase.task.exec();
+        } catch (Throwable e) {
+            entry.passed = false;
+            entry.error = e.toString();
+        } finally {
+            markPhase(PHASE.FINISHED);
+            CURRENT_ENTRY.remove();
+        }
+
+        Log.info("Worker {} finished {} in {} ms, passed: {}", worker.index, testCase.name, entry.finishedAt - entry.startedAt, entry.passed);
+        return entry;
+    }
+
+    private Map<String, Long> loadPreviousDurations() {
+        Map<String, Long> durations = new HashMap<>();
+        if (timelineFile == null || !timelineFile.exists()) return durations;
+
+        try {
+            String json = FileUtils.readFileToString(timelineFile, StandardCharsets.UTF_8);
+            TimelineReport report = gson.fromJson(json, TimelineReport.class);
+            if (report == null || report.entries == null) return durations;
+
+            for (TimelineEntry entry : report.entries) {
+                if (entry.finishedAt > entry.startedAt) {
+                    durations.put(entry.name, entry.finishedAt - entry.startedAt);
+                }
+            }
+        } catch (Exception e) {
+            Log.warn("Cannot read previous timeline {}, error: {}", timelineFile, e.getMessage());
+        }
+
+        return durations;
+    }
+
+    private void writeTimeline(List<TimelineEntry> entries, long suiteStartedAt) {
+        TimelineReport report = new TimelineReport();
+        report.startedAt = suiteStartedAt;
+        report.finishedAt = System.currentTimeMillis();
+        report.makespanInMs = report.finishedAt - suiteStartedAt;
+        report.parallelism = parallelism;
+        report.entries = entries;
+
+        long busyTime = 0;
+        for (TimelineEntry entry : entries) {
+            busyTime += entry.finishedAt - entry.startedAt;
+        }
+
+        Log.info("Suite makespan {} ms, total test time {} ms", report.makespanInMs, busyTime);
+        for (TimelineEntry entry : entries) {
+            Log.info("  {}: queued {} ms, booking {} ms, running {} ms",
+                entry.name,
+                entry.startedAt - entry.queuedAt,
+                entry.getBookingDurationInMs(),
+                entry.getRunningDurationInMs());
+        }
+
+        if (timelineFile == null) return;
+
+        try {
+            FileUtils.writeStringToFile(timelineFile, gson.toJson(report), StandardCharsets.UTF_8);
+            Log.info("Suite timeline is saved at {}", timelineFile.getAbsolutePath());
+        } catch (Exception e) {
+            Log.warn("Cannot save suite timeline", e);
+        }
+    }
+
+    private static class Worker {
+        final int index;
+        final ConcurrentLinkedDeque<TestCase> queue = new ConcurrentLinkedDeque<>();
+        long assignedWorkInMs;
+        volatile long remainingWorkInMs;
+
+        Worker(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Take the next test case from our own queue, or steal the longest one from the busiest worker
+         */
+        TestCase take(List<Worker> workers) {
+            TestCase testCase = queue.pollFirst();
+            if (testCase == null) {
+                List<Worker> victims = new ArrayList<>(workers);
+                victims.sort((Worker w1, Worker w2) -> Long.compare(w2.remainingWorkInMs, w1.remainingWorkInMs));
+                for (Worker victim : victims) {
+                    if (victim == this) continue;
+                    testCase = victim.queue.pollFirst();
+                    if (testCase != null) {
+                        Log.info("Worker {} steals {} from worker {}", index, testCase.name, victim.index);
+                        synchronized (victim) {
+                            victim.remainingWorkInMs -= testCase.estimatedDurationInMs;
+                        }
+                        return testCase;
+                    }
+                }
+
+                return null;
+            }
+
+            synchronized (this) {
+                remainingWorkInMs -= testCase.estimatedDurationInMs;
+            }
+            return testCase;
+        }
+    }
+
+    public abstract static class Task {
+        /**
+         * @return true if the test case passed
+         */
+        abstract boolean exec() throws Exception;
+    }
+
+    public static class TestCase {
+        public String name;
+        public Task task;
+        public long estimatedDurationInMs;
+
+        public TestCase(String name, Task task) {
+            this.name = name;
+            this.task = task;
+        }
+    }
+
+    public static class TimelineEntry {
+        public String name, error;
+        public int worker;
+        public boolean passed;
+        public long queuedAt, startedAt, bookingAt, runningAt, finishedAt, estimatedDurationInMs;
+
+        public TimelineEntry(String name, int worker) {
+            this.name = name;
+            this.worker = worker;
+        }
+
+        public long getBookingDurationInMs() {
+            if (bookingAt == 0) return 0;
+            return (runningAt > 0 ? runningAt : finishedAt) - bookingAt;
+        }
+
+        public long getRunningDurationInMs() {
+            if (runningAt == 0) return 0;
+            return finishedAt - runningAt;
+        }
+    }
+
+    public static class TimelineReport {
+        public long startedAt, finishedAt, makespanInMs;
+        public int parallelism;
+        public List<TimelineEntry> entries;
+    }
+}
@@ -2,10 +2,7 @@ package com.kobiton.scriptlessautomation;
 
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import com.google.gson.JsonObject;
-import com.google.gson.reflect.TypeToken;
-import com.google.gson.stream.JsonReader;
 import io.appium.java_client.AppiumDriver;
 import io.appium.java_client.MobileElement;
 import io.appium.java_client.Setting;
@@ -16,7 +13,6 @@ import io.appium.java_client.ios.IOSDriver;
 import io.appium.java_client.remote.MobileCapabilityType;
 import io.appium.java_client.remote.MobilePlatform;
 import okhttp3.*;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpHeaders;
 import org.apache.http.client.utils.URIBuilder;
@@ -28,20 +24,14 @@ import org.jsoup.select.Elements;
 import org.openqa.selenium.*;
 import org.openqa.selenium.html5.Location;
 import org.openqa.selenium.interactions.KeyInput;
-import org.openqa.selenium.interactions.PointerInput;
 import org.openqa.selenium.interactions.Sequence;
 import org.openqa.selenium.remote.DesiredCapabilities;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
 import java.io.*;
-import java.lang.reflect.Type;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
-import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class TestBase {
@@ -51,6 +41,9 @@ public class TestBase {
     public DesiredCapabilities desiredCaps;
     public boolean isIos;
     public Point screenSize;
+    public ScreenOrientation screenOrientation;
+    // App offset in the current orientation and foreground app, null until it is measured
+    public Point appOffset;
     public double retinaScale;
     public String deviceName, platformVersion;
 
@@ -59,19 +52,49 @@ public class TestBase {
 
     enum PRESS_TYPES {HOME, BACK, POWER, APP_SWITCH, ENTER, DELETE}
 
-    public Gson gson = new GsonBuilder().disableHtmlEscaping().create();
-    public final OkHttpClient httpClient = new OkHttpClient();
+    public Gson gson = SharedResources.GSON;
+    public final OkHttpClient httpClient = SharedResources.HTTP_CLIENT;
+    public final StepTelemetry telemetry = new StepTelemetry();
+    public DebugArtifactCollector debugArtifacts;
+    public ImplicitWaitManager implicitWait;
+    public final ElementPrefetcher prefetcher = new ElementPrefetcher();
 
     private String currentContext;
+    // Resolved once from the capabilities at setup
+    private boolean flexCorrectEnabled;
     private String currentWindow;
+    // Step run after the current one, its element is prefetched while the current action settles
+    private StepTable.Step nextStep;
+    // Native frame of webviews by context, window, orientation and viewport size
+    private final Map<String, Rectangle> webviewNativeRects = new HashMap<>();
+    private static String webElementScript;
+
+    // Some web page is very slow to load (up to 30s), and there is no web context until it finish loading
+    private static final RetryPolicy WEB_CONTEXT_RETRY = RetryPolicy.named("switchToWebContext")
+        .withBudget(40000).withBackoff(2000, 10000, 2);
+    // Attempts wait for the recorded timeout of the step (up to ~15s) themselves, so they are counted instead of timed
+    private static final RetryPolicy VISIBLE_ELEMENT_RETRY = RetryPolicy.named("findVisibleElement")
+        .withBudget(0).withMaxAttempts(3).withBackoff(1000, 3000, 2);
+    // Polled on the client with a zero implicit wait
+    private static final RetryPolicy MULTI_LOCATOR_RETRY = RetryPolicy.named("findElements")
+        .withBackoff(500, 2000, 2);
+    // Each failed attempt scrolls further, the interval lets the content settle
+    private static final RetryPolicy SCROLLABLE_RETRY = RetryPolicy.named("findVisibleElementOnScrollable")
+        .withBudget(0).withMaxAttempts(5).withBackoff(1000, 3000, 2);
 
     public void setup(DesiredCapabilities desiredCaps, double retinaScale) throws Exception {
+        SuiteRunner.markPhase(SuiteRunner.PHASE.RUNNING);
+        telemetry.attach();
         this.desiredCaps = desiredCaps;
         this.retinaScale = retinaScale;
         this.isIos = MobilePlatform.IOS.equalsIgnoreCase(
             (String) desiredCaps.getCapability(MobileCapabilityType.PLATFORM_NAME));
         this.deviceName = (String) desiredCaps.getCapability(MobileCapabilityType.DEVICE_NAME);
         this.platformVersion = (String) desiredCaps.getCapability(MobileCapabilityType.PLATFORM_VERSION);
+        this.flexCorrectEnabled = Config.DEVICE_SOURCE == Config.DEVICE_SOURCE_ENUMS.KOBITON &&
+            Boolean.TRUE.equals(desiredCaps.getCapability("kobiton:flexCorrect"));
+        Log.putContext("device", String.format("%s %s", deviceName, platformVersion));
+        this.debugArtifacts = new DebugArtifactCollector(deviceName, platformVersion);
 
         this.proxy = new ProxyServer();
 
@@ -81,9 +104,25 @@ public class TestBase {
         } else {
             driver = new AndroidDriver<>(appiumServerUrl, desiredCaps);
         }
+
+        implicitWait = new ImplicitWaitManager(driver);
+
+        if (getKobitonSessionId() > 0) {
+            Log.putContext("session", getKobitonSessionId());
+        }
     }
 
     public void cleanup() {
+        telemetry.finish(String.format("%s %s", deviceName, platformVersion), String.format("%s %s %s", deviceName, platformVersion, getKobitonSessionId()));
+
+        if (implicitWait != null) {
+            Log.debug("{}", implicitWait);
+        }
+
+        if (Config.PREFETCH_ENABLED) {
+            Log.debug("{}", prefetcher);
+        }
+
         if (driver != null) {
             driver.quit();
         }
@@ -95,16 +134,38 @@ public class TestBase {
         if (otpService != null) {
             otpService.cleanup();
         }
+
+        Log.clearContext();
     }
 
     public String updateCurrentContext() {
-        String previousContext = currentContext;
-        currentContext = driver.getContext();
-        if (!Objects.equals(previousContext, currentContext)) {
-            System.out.println(String.format("Context is changed from %s to %s", previousContext, currentContext));
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.CONTEXT_SWITCH)) {
+            String previousContext = currentContext;
+            currentContext = driver.getContext();
+            if (!Objects.equals(previousContext, currentContext)) {
+                Log.info("Context is changed from {} to {}", previousContext, currentContext);
+                implicitWait.reset();
+            }
+
+            return previousContext;
         }
+    }
 
-        return previousContext;
+    /**
+     * Take the context the proxy saw in the responses, ask the server only when it does not report its context
+     */
+    public void syncCurrentContext() {
+        if (proxy == null || !proxy.isContextReported) {
+            updateCurrentContext();
+            return;
+        }
+
+        String reportedContext = proxy.currentContext;
+        if (!Objects.equals(reportedContext, currentContext)) {
+            Log.info("Context is changed from {} to {}", currentContext, reportedContext);
+            currentContext = reportedContext;
+            implicitWait.reset();
+        }
     }
 
     public boolean isNativeContext() {
@@ -113,9 +174,12 @@ public class TestBase {
 
     public void switchContext(String context) {
         if (context.equals(currentContext)) return;
-        System.out.println(String.format("Switch to %s context", context));
-        driver.context(context);
-        currentContext = context;
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.CONTEXT_SWITCH)) {
+            Log.debug("Switch to {} context", context);
+            driver.context(context);
+            currentContext = context;
+            implicitWait.reset();
+        }
     }
 
     public void switchToNativeContext() {
@@ -124,46 +188,19 @@ public class TestBase {
 
     public void switchWindow(String window) {
         if (window.equals(currentWindow)) return;
-        System.out.println(String.format("Switch to %s window", window));
-        driver.switchTo().window(window);
-        currentWindow = window;
-        currentContext = null;
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.CONTEXT_SWITCH)) {
+            Log.debug("Switch to {} window", window);
+            driver.switchTo().window(window);
+            currentWindow = window;
+            currentContext = null;
+            implicitWait.reset();
+        }
     }
 
     private String switchToWebContextCore() throws Exception {
         switchToNativeContext();
         Document nativeDocument = loadXMLFromString(driver.getPageSource());
-        List<String> nativeTexts = new ArrayList<>();
-        Elements elements;
-        if (nativeDocument.selectXpath(getWebviewXpathSelector()).isEmpty()) {
-            elements = nativeDocument.selectXpath("//*");
-        }
-        else {
-            elements = nativeDocument.selectXpath(getWebviewXpathSelector() + "//*");
-        }
-
-        for (Element element : elements) {
-            if (!element.children().isEmpty()) continue;
-            String text = "";
-            if (isIos) {
-                List<String> excludeTags = Arrays.asList("XCUIElementTypeImage", "XCUIElementTypeSwitch");
-                if (excludeTags.contains(element.tagName())) continue;
-
-                text = element.attr("value");
-                if (text.isEmpty()) {
-                    text = element.attr("label");
-                }
-            }
-            else {
-                text = element.attr("text");
-                if (text.isEmpty() && "android.view.View".equals(element.tagName())) {
-                    text = element.attr("content-desc");
-                }
-            }
-
-            text = text.trim().toLowerCase();
-            if (!text.isEmpty()) nativeTexts.add(text);
-        }
+        List<String> nativeTexts = extractNativeTexts(nativeDocument, isIos);
 
         List<ContextInfo> webContextsInfo = collectWebContextsInfo(nativeTexts);
         if (webContextsInfo.isEmpty()) {
@@ -189,18 +226,10 @@ public class TestBase {
             throw new Exception("Cannot find any usable web contexts");
         }
 
-        ContextInfo bestContextInfo;
-        webContextsInfo.sort((ContextInfo c1, ContextInfo c2) -> (int) (c2.matchTextsPercent - c1.matchTextsPercent));
-        if (webContextsInfo.get(0).matchTextsPercent > 40) {
-            bestContextInfo = webContextsInfo.get(0);
-        } else {
-            webContextsInfo.sort((ContextInfo c1, ContextInfo c2) -> (int) (c2.sourceLength - c1.sourceLength));
-            bestContextInfo = webContextsInfo.get(0);
-        }
-
+        ContextInfo bestContextInfo = selectBestContext(webContextsInfo);
         switchWindow(bestContextInfo.window);
         switchContext(bestContextInfo.context);
-        System.out.println(String.format("Switched to %s web context in %s window successfully with confident %s%%", bestContextInfo.context, bestContextInfo.window, bestContextInfo.matchTextsPercent));
+        Log.info("Switched to {} web context in {} window successfully with confident {}%", bestContextInfo.context, bestContextInfo.window, bestContextInfo.matchTextsPercent);
         return bestContextInfo.context;
     }
 
@@ -209,7 +238,7 @@ public class TestBase {
         Set<String> contexts = driver.getContextHandles();
         boolean hasWebContext = contexts.stream().anyMatch(context -> !NATIVE_CONTEXT.equals(context));
         if (!hasWebContext) {
-            System.out.println("No web context is available, contexts: " + String.join(", ", contexts));
+            Log.info("No web context is available, contexts: {}", String.join(", ", contexts));
         }
 
         for (String context : contexts) {
@@ -225,23 +254,12 @@ public class TestBase {
                 if (isHiddenDocument) continue;
                 source = driver.getPageSource();
             } catch (Exception ex) {
-                System.out.println(String.format("Bad context %s, error \"%s\", skipping...", context, ex.getMessage()));
+                Log.warn("Bad context {}, error \"{}\", skipping...", context, ex.getMessage());
                 continue;
             }
 
             if (source == null) continue;
-            contextInfo.sourceLength = source.length();
-            if (nativeTexts.isEmpty()) continue;
-
-            Document htmlDoc = loadXMLFromString(source);
-            String bodyString = htmlDoc.select("body").text().toLowerCase();
-            long matchTexts = 0;
-            for (String nativeText : nativeTexts) {
-                if (bodyString.contains(nativeText)) matchTexts++;
-            }
-
-            contextInfo.matchTexts = matchTexts;
-            contextInfo.matchTextsPercent = matchTexts * 100 / nativeTexts.size();
+            scoreWebContext(contextInfo, source, nativeTexts);
             if (contextInfo.matchTextsPercent >= 80) {
                 break;
             }
@@ -250,25 +268,98 @@ public class TestBase {
         return contextInfos;
     }
 
-    public String switchToWebContext() throws Exception {
-        // Some web page is very slow to load (up to 30s),
-        // and there is no web context until it finish loading
-        return Utils.retry(new Utils.Task<String>() {
-            @Override
-            String exec(int attempt) throws Exception {
-                System.out.println(String.format("Finding a web context %s attempt", Utils.convertToOrdinal(attempt)));
-                return switchToWebContextCore();
+    /**
+     * Visible texts of the leaf elements in the webview (or the whole screen without one) of a native page source
+     */
+    public static List<String> extractNativeTexts(Document nativeDocument, boolean isIos) {
+        List<String> nativeTexts = new ArrayList<>();
+        Elements elements;
+        if (nativeDocument.selectXpath(getWebviewXpathSelector(isIos)).isEmpty()) {
+            elements = nativeDocument.selectXpath("//*");
+        }
+        else {
+            elements = nativeDocument.selectXpath(getWebviewXpathSelector(isIos) + "//*");
+        }
+
+        for (Element element : elements) {
+            if (!element.children().isEmpty()) continue;
+            String text = "";
+            if (isIos) {
+                List<String> excludeTags = Arrays.asList("XCUIElementTypeImage", "XCUIElementTypeSwitch");
+                if (excludeTags.contains(element.tagName())) continue;
+
+                text = element.attr("value");
+                if (text.isEmpty()) {
+                    text = element.attr("label");
+                }
             }
-        }, 4, 10000);
+            else {
+                text = element.attr("text");
+                if (text.isEmpty() && "android.view.View".equals(element.tagName())) {
+                    text = element.attr("content-desc");
+                }
+            }
+
+            text = text.trim().toLowerCase();
+            if (!text.isEmpty()) nativeTexts.add(text);
+        }
+
+        return nativeTexts;
+    }
+
+    /**
+     * Score a web context by how many native texts its page source contains
+     */
+    public static void scoreWebContext(ContextInfo contextInfo, String source, List<String> nativeTexts) {
+        contextInfo.sourceLength = source.length();
+        if (nativeTexts.isEmpty()) return;
+
+        Document htmlDoc = loadXMLFromString(source);
+        String bodyString = htmlDoc.select("body").text().toLowerCase();
+        long matchTexts = 0;
+        for (String nativeText : nativeTexts) {
+            if (bodyString.contains(nativeText)) matchTexts++;
+        }
+
+        contextInfo.matchTexts = matchTexts;
+        contextInfo.matchTextsPercent = matchTexts * 100 / nativeTexts.size();
+    }
+
+    /**
+     * The context matching most native texts when it is confident enough, the one with the longest source otherwise
+     */
+    public static ContextInfo selectBestContext(List<ContextInfo> webContextsInfo) {
+        webContextsInfo.sort((ContextInfo c1, ContextInfo c2) -> (int) (c2.matchTextsPercent - c1.matchTextsPercent));
+        if (webContextsInfo.get(0).matchTextsPercent > 40) {
+            return webContextsInfo.get(0);
+        }
+
+        webContextsInfo.sort((ContextInfo c1, ContextInfo c2) -> (int) (c2.sourceLength - c1.sourceLength));
+        return webContextsInfo.get(0);
+    }
+
+    public String switchToWebContext() throws Exception {
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.CONTEXT_SWITCH)) {
+            return WEB_CONTEXT_RETRY.execute(new Utils.Task<String>() {
+                @Override
+                String exec(int attempt) throws Exception {
+                    Log.debug("Finding a web context {} attempt", Utils.convertToOrdinal(attempt));
+                    return switchToWebContextCore();
+                }
+            });
+        }
     }
 
     public Object executeScriptOnWebElement(MobileElement element, String command) throws Exception {
-        String script = IOUtils.toString(getResourceAsStream("execute-script-on-web-element.js"), StandardCharsets.UTF_8);
-        return driver.executeScript(script, element, command);
+        if (webElementScript == null) {
+            webElementScript = IOUtils.toString(getResourceAsStream("execute-script-on-web-element.js"), StandardCharsets.UTF_8);
+        }
+
+        return driver.executeScript(webElementScript, element, command);
     }
 
     public void scrollToWebElement(MobileElement element) throws Exception {
-        System.out.println(String.format("Scroll to web element %s", element.getTagName()));
+        Log.debug("Scroll to web element {}", element.getTagName());
         executeScriptOnWebElement(element, "scrollIntoView");
         sleep(1000);
     }
@@ -290,26 +381,65 @@ public class TestBase {
         double scale = Double.parseDouble(driver.executeScript("return window.visualViewport.scale").toString());
         executeScriptOnWebElement(null, "insertKobitonWebview");
         switchToNativeContext();
+        return toNativeRect(webElementRect, probeWebviewNativeRect(), scale);
+    }
 
+    /**
+     * Native rect of a web element with one script call for scale, element rect and viewport,
+     * the webview frame is only probed in native context when it is not cached for the context, orientation and viewport
+     */
+    public Rectangle getNativeRectOfWebElement(MobileElement element) throws Exception {
+        String resultString = (String) executeScriptOnWebElement(element, "getGeometry");
+        JsonObject resultJson = gson.fromJson(resultString, JsonObject.class);
+        Rectangle webElementRect = new Rectangle(
+            (int) (resultJson.get("x").getAsLong() / retinaScale),
+            (int) (resultJson.get("y").getAsLong() / retinaScale),
+            (int) (resultJson.get("height").getAsLong() / retinaScale),
+            (int) (resultJson.get("width").getAsLong() / retinaScale)
+        );
+        double scale = resultJson.get("scale").getAsDouble();
+
+        // The frame moves when the browser toolbar collapses, which also changes the viewport size
+        String webviewKey = String.format("%s|%s|%s|%sx%s", currentContext, currentWindow, screenOrientation,
+            resultJson.get("windowInnerWidth").getAsLong(), resultJson.get("windowInnerHeight").getAsLong());
+        switchToNativeContext();
+
+        Rectangle webviewRect = webviewNativeRects.get(webviewKey);
+        if (webviewRect == null) {
+            webviewRect = probeWebviewNativeRect();
+            webviewNativeRects.put(webviewKey, webviewRect);
+        }
+
+        return toNativeRect(webElementRect, webviewRect, scale);
+    }
+
+    private Rectangle toNativeRect(Rectangle webElementRect, Rectangle webviewRect, double scale) {
+        Rectangle nativeRect = new Rectangle(
+            webviewRect.x + webElementRect.x,
+            webviewRect.y + webElementRect.y,
+            webElementRect.height,
+            webElementRect.width
+        );
+
+        cropRect(nativeRect, webviewRect);
+        scaleRect(nativeRect, scale);
+        return nativeRect;
+    }
+
+    /**
+     * Find the frame of the webview in native context, by the inserted Kobiton webview element or by the browser toolbar
+     */
+    private Rectangle probeWebviewNativeRect() throws Exception {
         try {
             MobileElement kobitonWebview = this.isIos
                 ? findSingleElementBy(By.xpath("//*[@label='__kobiton_webview__']"))
                 : findSingleElementBy(By.xpath("//*[@text='__kobiton_webview__']"));
-            Rectangle kobitonWebviewRect = kobitonWebview.getRect();
-            Rectangle nativeRect = new Rectangle(
-                    webElementRect.x + kobitonWebviewRect.x,
-                    webElementRect.y + kobitonWebviewRect.y,
-                    webElementRect.height,
-                    webElementRect.width
-            );
-            cropRect(nativeRect, kobitonWebviewRect);
-            scaleRect(nativeRect, scale);
-            return nativeRect;
+            return kobitonWebview.getRect();
         }
         catch (Exception e) {
             if (this.isIos) throw e;
 
-            System.out.println(e.getMessage());
+            Log.debug(e.getMessage());
             Document nativeDoc = loadXMLFromString(driver.getPageSource());
             int webviewTop = 0;
             Element toolbarElement = nativeDoc.selectXpath("//*[@resource-id='com.android.chrome:id/toolbar' or @resource-id='com.android.chrome:id/url_bar' or @resource-id='com.android.chrome:id/location_bar' or @resource-id='com.android.chrome:id/home_button' or @resource-id='com.android.chrome:id/tab_switcher_button' or @resource-id='com.android.chrome:id/menu_button']").first();
@@ -351,6 +481,9 @@ public class TestBase {
                         throw new Exception("Cannot find webview element");
                     }
 
+                    // Indexed once, the ancestors of the webview are checked against the same page source
+                    XPathIndex xpathIndex = new XPathIndex(nativeDocument);
+
                     Element curElement = webviewElement.parent();
                     while (curElement != null) {
                         Element firstChildElement = curElement.child(0);
@@ -362,7 +495,7 @@ public class TestBase {
                         );
 
                         if (!webviewRect.equals(firstChildRect) && Utils.isRectangleInclude(webviewRect, firstChildRect)) {
-                            String topToolbarXpath = Utils.getXPath(firstChildElement).replace(IOS_XPATH_REDUNDANT_PREFIX, "");
+                            String topToolbarXpath = xpathIndex.getShortestUniqueXPath(firstChildElement).replace(IOS_XPATH_REDUNDANT_PREFIX, "");
                             topToolbar = findSingleElementBy(By.xpath(topToolbarXpath));
                             break;
                         }
@@ -380,28 +513,17 @@ public class TestBase {
                 deltaHeight = webViewTop - webviewRect.y;
             }
 
-            webviewRect = new Rectangle(
+            return new Rectangle(
                 webviewRect.x,
                 webViewTop,
                 webviewRect.height - deltaHeight,
                 webviewRect.width
             );
-
-            Rectangle nativeRect = new Rectangle(
-                webviewRect.x + webElementRect.x,
-                webviewRect.y + webElementRect.y,
-                webElementRect.height,
-                webElementRect.width
-            );
-
-            cropRect(nativeRect, webviewRect);
-            scaleRect(nativeRect, scale);
-            return nativeRect;
         }
     }
 
-    private MobileElement findVisibleElementCore(int timeoutInMiliSeconds, By... locators) throws Exception {
-        List<MobileElement> foundElements = findElementsBy(null, timeoutInMiliSeconds, locators);
+    private MobileElement findVisibleElementCore(int timeoutInMiliSeconds, Locator locator) throws Exception {
+        List<MobileElement> foundElements = findElementsBy(null, timeoutInMiliSeconds, locator);
         MobileElement foundVisibleElement = null;
 
         for (MobileElement element : foundElements) {
@@ -423,7 +545,7 @@ public class TestBase {
         }
 
         if (foundVisibleElement == null) {
-            throw new Exception(String.format("Cannot find visible element by: %s", Utils.getLocatorText(locators)));
+            throw new Exception(String.format("Cannot find visible element by: %s", locator));
         }
 
         if (!isNativeContext()) {
@@ -434,27 +556,37 @@ public class TestBase {
     }
 
     public MobileElement findVisibleElement(int timeoutInMiliSeconds, By... locators) throws Exception{
-        return Utils.retry(new Utils.Task<MobileElement>() {
-            @Override
-            MobileElement exec(int attempt) throws Exception {
-                System.out.println(String.format("Finding visible element %s attempt with locator: %s", Utils.convertToOrdinal(attempt), Utils.getLocatorText(locators)));
-                return findVisibleElementCore(timeoutInMiliSeconds, locators);
+        return findVisibleElement(timeoutInMiliSeconds, Locator.of(locators));
+    }
+
+    public MobileElement findVisibleElement(int timeoutInMiliSeconds, Locator locator) throws Exception {
+        Locator deviceLocator = resolveLocator(locator);
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.ELEMENT_LOOKUP)) {
+            if (isNativeContext()) {
+                return findVisibleElementCore(timeoutInMiliSeconds, deviceLocator);
             }
 
-            @Override
-            public void handleException(Exception e, int attempt) throws Exception {
-                // Prevent switching to the wrong web context by trying a different one
-                if (!isNativeContext()) {
+            return VISIBLE_ELEMENT_RETRY.execute(new Utils.Task<MobileElement>() {
+                @Override
+                MobileElement exec(int attempt) throws Exception {
+                    Log.debug("Finding visible element {} attempt with locator: {}", Utils.convertToOrdinal(attempt), deviceLocator);
+                    return findVisibleElementCore(timeoutInMiliSeconds, deviceLocator);
+                }
+
+                @Override
+                public void handleException(Exception e, int attempt) throws Exception {
+                    // Prevent switching to the wrong web context by trying a different one
                     switchToWebContext();
                 }
-            }
-        }, isNativeContext() ? 1 : 3, 3000);
+            });
+        }
     }
 
     private MobileElement findSingleElementBy(By locator) throws Exception {
-        System.out.println("Find element by: " + locator);
+        Log.debug("Find element by: {}", locator);
 
         try {
+            setImplicitWaitInMiliSecond(Config.IMPLICIT_WAIT_IN_MS);
             return this.driver.findElement(locator);
         }
         catch (Exception ignored) {
@@ -462,67 +594,75 @@ public class TestBase {
         }
     }
 
-    private List<MobileElement> findElements(MobileElement rootElement, int timeoutInMiliSeconds, boolean multiple, By... locators) throws Exception {
-        String locatorText = Utils.getLocatorText(locators);
-        System.out.println(String.format("Find element by: %s", locatorText));
-        String notFoundMessage = String.format("Cannot find element by: %s", locatorText);
+    /**
+     * A single locator waits on the server with the implicit wait, several locators are polled on the client
+     * with a zero implicit wait so one missing locator does not hold the others back.
+     * The implicit wait is left as is afterwards, each lookup sets the value it needs.
+     */
+    private List<MobileElement> findElements(MobileElement rootElement, int timeoutInMiliSeconds, boolean multiple, Locator locator) throws Exception {
+        Log.debug("Find element by: {}", locator);
 
+        By[] locators = locator.locators;
         if (locators.length == 1) {
             setImplicitWaitInMiliSecond(timeoutInMiliSeconds);
+            List<MobileElement> elements = findElementsOnce(rootElement, multiple, locators[0]);
+            if (elements != null) return elements;
 
-            List<MobileElement> elements = null;
-            if (rootElement == null) {
-                elements = driver.findElements(locators[0]);
-            } else {
-                elements = rootElement.findElements(locators[0]);
-            }
-
-            setImplicitWaitInMiliSecond(Config.IMPLICIT_WAIT_IN_MS);
+            throw new Exception(String.format("Cannot find element by: %s", locator));
+        }
 
-            if (multiple && elements != null && !elements.isEmpty())
-                return elements;
-            else if (!multiple && elements != null && elements.size() == 1)
-                return elements;
+        setImplicitWaitInMiliSecond(0);
+        RetryPolicy retryPolicy = timeoutInMiliSeconds > 0
+            ? MULTI_LOCATOR_RETRY.withBudget(timeoutInMiliSeconds)
+            : MULTI_LOCATOR_RETRY.withMaxAttempts(1);
+        return retryPolicy.execute(new Utils.Task<List<MobileElement>>() {
+            @Override
+            List<MobileElement> exec(int attempt) throws Exception {
+                Exception lastError = null;
+                for (By by : locators) {
+                    try {
+                        List<MobileElement> elements = findElementsOnce(rootElement, multiple, by);
+                        if (elements != null) return elements;
+                    } catch (NoSuchSessionException e) {
+                        // The retry policy aborts on it, the session is gone
+                        throw e;
+                    } catch (Exception e) {
+                        lastError = e;
+                    }
+                }
 
-            throw new Exception(notFoundMessage);
-        } else {
-            int waitInterval = 5;
-            return Utils.retry(new Utils.Task<List<MobileElement>>() {
-                @Override
-                List<MobileElement> exec(int attempt) throws Exception {
-                    setImplicitWaitInMiliSecond(0);
-                    List<MobileElement> elements = null;
-                    for (By locator : locators) {
-                        try {
-                            if (rootElement == null) {
-                                elements = driver.findElements(locator);
-                            } else {
-                                elements = rootElement.findElements(locator);
-                            }
+                throw new Exception(String.format("Cannot find element by: %s", locator), lastError);
+            }
+        });
+    }
 
-                            if (multiple && elements != null && !elements.isEmpty())
-                                return elements;
-                            else if (!multiple && elements != null && elements.size() == 1)
-                                return elements;
-                        } catch (Exception ignored) {
-                        }
-                    }
+    /**
+     * @return the found elements, null when none or (for a single element) several are found
+     */
+    private List<MobileElement> findElementsOnce(MobileElement rootElement, boolean multiple, By locator) {
+        List<MobileElement> elements = rootElement == null ? driver.findElements(locator) : rootElement.findElements(locator);
+        if (multiple && elements != null && !elements.isEmpty())
+            return elements;
+        else if (!multiple && elements != null && elements.size() == 1)
+            return elements;
 
-                    setImplicitWaitInMiliSecond(Config.IMPLICIT_WAIT_IN_MS);
-                    throw new Exception(notFoundMessage);
-                }
-            }, timeoutInMiliSeconds / (waitInterval * 1000), waitInterval * 1000);
-        }
+        return null;
     }
 
     public MobileElement findElementBy(MobileElement rootElement, int timeoutInMiliSeconds, By... locators) throws Exception {
-        List<MobileElement> foundElements = findElements(rootElement, timeoutInMiliSeconds, true, locators);
-        // flex correct could switch context on the fly
-        if (isFlexCorrectEnabled()) {
-            updateCurrentContext();
-        }
+        return findElementBy(rootElement, timeoutInMiliSeconds, Locator.of(locators));
+    }
 
-        return foundElements.get(0);
+    public MobileElement findElementBy(MobileElement rootElement, int timeoutInMiliSeconds, Locator locator) throws Exception {
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.ELEMENT_LOOKUP)) {
+            List<MobileElement> foundElements = findElements(rootElement, timeoutInMiliSeconds, true, resolveLocator(locator));
+            // flex correct could switch context on the fly
+            if (isFlexCorrectEnabled()) {
+                syncCurrentContext();
+            }
+
+            return foundElements.get(0);
+        }
     }
 
     public MobileElement findElementBy(By... locators) throws Exception {
@@ -533,43 +673,138 @@ public class TestBase {
         return findElementBy(null, Math.max(Config.IMPLICIT_WAIT_IN_MS, timeoutInMiliSeconds), locators);
     }
 
+    public MobileElement findElementBy(Locator locator) throws Exception {
+        return findElementBy(null, Config.IMPLICIT_WAIT_IN_MS, locator);
+    }
+
+    public MobileElement findElementBy(int timeoutInMiliSeconds, Locator locator) throws Exception {
+        return findElementBy(null, Math.max(Config.IMPLICIT_WAIT_IN_MS, timeoutInMiliSeconds), locator);
+    }
+
     public List<MobileElement> findElementsBy(MobileElement rootElement, int timeoutInMiliSeconds, By... locators) throws Exception {
-        List<MobileElement> foundElements = findElements(rootElement, timeoutInMiliSeconds, true, locators);
-        // flex correct could switch context on the fly
-        if (isFlexCorrectEnabled()) {
-            updateCurrentContext();
-        }
+        return findElementsBy(rootElement, timeoutInMiliSeconds, Locator.of(locators));
+    }
 
-        return foundElements;
+    public List<MobileElement> findElementsBy(MobileElement rootElement, int timeoutInMiliSeconds, Locator locator) throws Exception {
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.ELEMENT_LOOKUP)) {
+            List<MobileElement> foundElements = findElements(rootElement, timeoutInMiliSeconds, true, resolveLocator(locator));
+            // flex correct could switch context on the fly
+            if (isFlexCorrectEnabled()) {
+                syncCurrentContext();
+            }
+
+            return foundElements;
+        }
     }
 
     public List<MobileElement> findElementsBy(By... locators) throws Exception {
         return findElementsBy(null, Config.IMPLICIT_WAIT_IN_MS, locators);
     }
 
+    public List<MobileElement> findElementsBy(Locator locator) throws Exception {
+        return findElementsBy(null, Config.IMPLICIT_WAIT_IN_MS, locator);
+    }
+
+    /**
+     * The locators of the current device when the step was recorded with device specific ones
+     */
+    public Locator resolveLocator(Locator locator) {
+        return locator.resolve(deviceName, platformVersion);
+    }
+
     /**
      * Scroll to find best element on scrollable
      */
     public MobileElement findVisibleElementOnScrollable(int timeoutInMiliSeconds, By... locators) throws Exception {
-        Type type = new TypeToken<Map<String, String>>() {
-        }.getType();
-        JsonReader reader = new JsonReader(new InputStreamReader(getResourceAsStream(getCurrentCommandId() + ".json")));
-        Map<String, String> infoMap = gson.fromJson(reader, type);
+        return findVisibleElementOnScrollable(timeoutInMiliSeconds, Locator.of(locators));
+    }
+
+    public MobileElement findVisibleElementOnScrollable(int timeoutInMiliSeconds, Locator locator) throws Exception {
+        Locator deviceLocator = resolveLocator(locator);
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.ELEMENT_LOOKUP)) {
+            Map<String, String> infoMap = ElementInfoCatalog.get(getCurrentCommandId());
+            if (!isNativeContext()) {
+                return findVisibleElementOnScrollableByRetry(infoMap, timeoutInMiliSeconds, deviceLocator);
+            }
+
+            Log.debug("Finding visible element on scrollable with locator: {}", deviceLocator);
+            try {
+                return findVisibleElementCore(timeoutInMiliSeconds, deviceLocator);
+            } catch (Exception e) {
+                Log.warn("Cannot find visible element before scrolling, error: {}", e.getMessage());
+            }
+
+            String scrollableXpath = infoMap.get("scrollableElementXpath");
+            MobileElement scrollableElement = findElementBy(By.xpath(scrollableXpath));
+            hideKeyboard();
+            swipeToTop(getCenterOfElement(scrollableElement));
+            sleep(ScrollSearch.SETTLE_IN_MS * 2);
+
+            Point screenSize = getScreenSize();
+            Point center = getCenterOfElement(scrollableElement);
+            Rectangle rect = scrollableElement.getRect();
+            // Fix bug when scrollableElement is out of viewport
+            if (center.y > screenSize.y || rect.height < 0) {
+                center.y = screenSize.y / 2;
+            }
+
+            double distance = rect.height / 1.5;
+            ScrollSearch.Snapshot previousSnapshot = null;
+            for (int scroll = 0; scroll <= ScrollSearch.MAX_SCROLLS; scroll++) {
+                Document document = loadXMLFromString(driver.getPageSource());
+                Boolean matched = ScrollSearch.matchesLocally(document, isIos, deviceLocator.locators);
+                if (!Boolean.FALSE.equals(matched)) {
+                    try {
+                        return findVisibleElementCore(matched != null ? timeoutInMiliSeconds : 0, deviceLocator);
+                    } catch (Exception e) {
+                        Log.warn("Cannot find visible element after {} scrolls, error: {}", scroll, e.getMessage());
+                    }
+                }
+
+                ScrollSearch.Snapshot snapshot = ScrollSearch.takeSnapshot(document, scrollableXpath, isIos);
+                if (snapshot.isSameAs(previousSnapshot)) {
+                    Log.info("Reached the end of scrollable after {} scrolls", scroll);
+                    break;
+                }
+
+                if (previousSnapshot != null) {
+                    distance = ScrollSearch.adaptDistance(distance, ScrollSearch.measureShift(previousSnapshot, snapshot), rect.height);
+                }
+
+                previousSnapshot = snapshot;
+                Point toPoint = new Point(center.x, Math.max((int) (center.y - distance), 0));
+                dragByPoint(center, toPoint);
+                sleep(ScrollSearch.SETTLE_IN_MS);
+            }
+
+            // The local check could miss locators the driver evaluates differently
+            try {
+                return findVisibleElementCore(timeoutInMiliSeconds, deviceLocator);
+            } catch (Exception e) {
+                throw new Exception("Cannot find any visible element on scrollable", e);
+            }
+        }
+    }
+
+    /**
+     * Scroll by fixed distance and retry to find the element, used in web context where there is no native page source to compare
+     */
+    private MobileElement findVisibleElementOnScrollableByRetry(Map<String, String> infoMap, int timeoutInMiliSeconds, Locator locator) throws Exception {
         Point screenSize = getScreenSize();
 
-        MobileElement touchableElement = Utils.retry(new Utils.Task<MobileElement>() {
+        MobileElement touchableElement = SCROLLABLE_RETRY.execute(new Utils.Task<MobileElement>() {
             private MobileElement scrollableElement;
             private boolean swipedToTop = false;
 
             @Override
             MobileElement exec(int attempt) throws Exception {
-                System.out.println(String.format("Finding visible element on scrollable %s attempt with locator: %s", Utils.convertToOrdinal(attempt), Utils.getLocatorText(locators)));
-                return findVisibleElementCore(timeoutInMiliSeconds, locators);
+                Log.debug("Finding visible element on scrollable {} attempt with locator: {}", Utils.convertToOrdinal(attempt), locator);
+                return findVisibleElementCore(timeoutInMiliSeconds, locator);
             }
 
             @Override
             public void handleException(Exception e, int attempt) throws Exception {
-                System.out.println(String.format("Cannot find visible element on scrollable %s attempt, error: %s", Utils.convertToOrdinal(attempt), e.getMessage()));
+                Log.warn("Cannot find visible element on scrollable {} attempt, error: {}", Utils.convertToOrdinal(attempt), e.getMessage());
                 // Might switch to the wrong web context on the first attempt; retry before scrolling down
                 if (!isNativeContext() && attempt == 1) {
                     // Wait a bit for web is fully loaded
@@ -598,7 +833,7 @@ public class TestBase {
                     dragByPoint(center, toPoint);
                 }
             }
-        }, 5, 3000);
+        });
 
         if (touchableElement == null) {
             throw new Exception("Cannot find any visible element on scrollable");
@@ -617,14 +852,18 @@ public class TestBase {
     }
 
     public String getWebviewXpathSelector() {
-        return this.isIos ? "(//XCUIElementTypeWebView)[1]" : "(//android.webkit.WebView)[1]";
+        return getWebviewXpathSelector(isIos);
+    }
+
+    public static String getWebviewXpathSelector(boolean isIos) {
+        return isIos ? "(//XCUIElementTypeWebView)[1]" : "(//android.webkit.WebView)[1]";
     }
 
     /**
      * Touch at center of element (element need to be visible)
      */
     public void touchAtCenterOfElement(MobileElement element) {
-        System.out.println(String.format("Touch at center of element %s", element.getTagName()));
+        Log.debug("Touch at center of element {}", element.getTagName());
         Point center = getCenterOfElement(element);
         touchAtPoint(center);
     }
@@ -644,22 +883,23 @@ public class TestBase {
      * Click element (element need to be visible)
      */
     public void clickElement(MobileElement element) {
-        System.out.println(String.format("Click on element with type: %s", element.getTagName()));
-        element.click();
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.GESTURE)) {
+            Log.debug("Click on element with type: {}", element.getTagName());
+            element.click();
+        }
     }
 
     /**
      * Touch at relative point of element (element need to be visible)
      */
     public void touchAtRelativePointOfElement(MobileElement element, double relativePointX, double relativePointY) throws Exception {
-        System.out.println(String.format("Touch on element %s at relative point (%s %s)", element.getTagName(), relativePointX, relativePointY));
+        Log.debug("Touch on element {} at relative point ({} {})", element.getTagName(), relativePointX, relativePointY);
         Rectangle nativeRect;
         if (isNativeContext()) {
             nativeRect = element.getRect();
         }
         else {
-            Rectangle webRect = getWebElementRect(element);
-            nativeRect = calculateNativeRect(webRect);
+            nativeRect = getNativeRectOfWebElement(element);
         }
 
         touchAtPoint(getAbsolutePoint(relativePointX, relativePointY, nativeRect));
@@ -669,7 +909,7 @@ public class TestBase {
      * Touch at a relative position
      */
     public void touchAtPoint(double relativePointX, double relativePointY) throws IOException {
-        System.out.println(String.format("Touch at relative point (%s, %s)", relativePointX, relativePointY));
+        Log.debug("Touch at relative point ({}, {})", relativePointX, relativePointY);
 
         Point absolutePoint = getAbsolutePoint(relativePointX, relativePointY);
         touchAtPoint(absolutePoint);
@@ -679,25 +919,20 @@ public class TestBase {
      * Touch at a Point
      */
     public void touchAtPoint(Point point) {
-        System.out.println(String.format("Touch at point (%s, %s)", point.x, point.y));
-
-        PointerInput finger = new PointerInput(PointerInput.Kind.TOUCH, "finger");
-        Sequence touchSequence = new Sequence(finger, 0);
-        touchSequence.addAction(finger.createPointerMove(Duration.ofMillis(0), PointerInput.Origin.viewport(), point.x, point.y));
-        touchSequence.addAction(finger.createPointerDown(PointerInput.MouseButton.LEFT.asArg()));
-        touchSequence.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
-        driver.perform(Arrays.asList(touchSequence));
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.GESTURE)) {
+            Log.debug("Touch at point ({}, {})", point.x, point.y);
+            new GestureBuilder().tap(point).perform(driver);
+        }
     }
 
     public void swipeOnElement(MobileElement element, double relativePointX1, double relativePointY1, double relativePointX2, double relativePointY2, int durationInMs) throws Exception {
-        System.out.println(String.format("Swipe on element %s from relative point (%s %s) to relative point (%s %s)", element.getTagName(), relativePointX1, relativePointY1, relativePointX2, relativePointY2));
+        Log.debug("Swipe on element {} from relative point ({} {}) to relative point ({} {})", element.getTagName(), relativePointX1, relativePointY1, relativePointX2, relativePointY2);
         Rectangle nativeRect;
         if (isNativeContext()) {
             nativeRect = element.getRect();
         }
         else {
-            Rectangle webRect = getWebElementRect(element);
-            nativeRect = calculateNativeRect(webRect);
+            nativeRect = getNativeRectOfWebElement(element);
         }
 
         Point fromPoint = getAbsolutePoint(relativePointX1, relativePointY1, nativeRect);
@@ -709,12 +944,7 @@ public class TestBase {
      * Swipe from center of element (with accelerate)
      */
     public void swipeFromPoint(Point fromPoint, double relativeOffsetX, double relativeOffsetY, int durationInMs) throws IOException {
-        double toX = fromPoint.x + relativeOffsetX * getScreenSize().x;
-        double toY = fromPoint.y + relativeOffsetY * getScreenSize().y;
-        toX = Math.max(toX, 0);
-        toY = Math.max(toY, 0);
-        Point toPoint = new Point((int) toX, (int) toY);
-
+        Point toPoint = ScreenGeometry.offsetPoint(fromPoint, relativeOffsetX, relativeOffsetY, getScreenSize());
         swipeByPoint(fromPoint, toPoint, durationInMs);
     }
 
@@ -722,12 +952,7 @@ public class TestBase {
      * Drag from center element (no accelerate)
      */
     public Sequence dragFromPoint(Point fromPoint, double relativeOffsetX, double relativeOffsetY) throws IOException {
-        double toX = fromPoint.x + relativeOffsetX * getScreenSize().x;
-        double toY = fromPoint.y + relativeOffsetY * getScreenSize().y;
-        toX = Math.max(toX, 0);
-        toY = Math.max(toY, 0);
-        Point toPoint = new Point((int) toX, (int) toY);
-
+        Point toPoint = ScreenGeometry.offsetPoint(fromPoint, relativeOffsetX, relativeOffsetY, getScreenSize());
         return dragByPoint(fromPoint, toPoint);
     }
 
@@ -735,7 +960,7 @@ public class TestBase {
      * Swipe from relative position to relative position (with accelerate)
      */
     public void swipeByPoint(double fromRelativePointX, double fromRelativePointY, double toRelativePointX, double toRelativePointY, int durationInMs) throws IOException {
-        System.out.println(String.format("Swipe from relative point (%s, %s) to relative point (%s, %s) with duration %s", fromRelativePointX, fromRelativePointY, toRelativePointX, toRelativePointY, durationInMs));
+        Log.debug("Swipe from relative point ({}, {}) to relative point ({}, {}) with duration {}", fromRelativePointX, fromRelativePointY, toRelativePointX, toRelativePointY, durationInMs);
 
         Point fromPoint = getAbsolutePoint(fromRelativePointX, fromRelativePointY);
         Point toPoint = getAbsolutePoint(toRelativePointX, toRelativePointY);
@@ -747,17 +972,10 @@ public class TestBase {
      * Swipe from Point to Point (with accelerate)
      */
     public void swipeByPoint(Point fromPoint, Point toPoint, int durationInMs) {
-        System.out.println(String.format("Swipe from point (%s, %s) to point (%s, %s) with duration %s", fromPoint.x, fromPoint.y, toPoint.x, toPoint.y, durationInMs));
-
-        PointerInput finger = new PointerInput(PointerInput.Kind.TOUCH, "finger");
-        Sequence sequence = new Sequence(finger, 0);
-
-        sequence.addAction(finger.createPointerMove(Duration.ofMillis(0), PointerInput.Origin.viewport(), fromPoint.x, fromPoint.y));
-        sequence.addAction(finger.createPointerDown(PointerInput.MouseButton.LEFT.asArg()));
-        sequence.addAction(finger.createPointerMove(Duration.ofMillis(durationInMs), PointerInput.Origin.viewport(), toPoint.x, toPoint.y));
-        sequence.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
-
-        driver.perform(Arrays.asList(sequence));
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.GESTURE)) {
+            Log.debug("Swipe from point ({}, {}) to point ({}, {}) with duration {}", fromPoint.x, fromPoint.y, toPoint.x, toPoint.y, durationInMs);
+            new GestureBuilder().move(fromPoint, toPoint, GestureBuilder.getFlingTemplate(durationInMs)).perform(driver);
+        }
     }
 
     /**
@@ -765,7 +983,7 @@ public class TestBase {
      */
     public void swipeToTop(Point fromPoint) throws Exception {
         Point toPoint = new Point(fromPoint.x, getScreenSize().y - 10);
-        System.out.println(String.format("Swipe to top from point (%s, %s) to point (%s, %s)", fromPoint.x, fromPoint.y, toPoint.x, toPoint.y));
+        Log.debug("Swipe to top from point ({}, {}) to point ({}, {})", fromPoint.x, fromPoint.y, toPoint.x, toPoint.y);
 
         swipeByPoint(fromPoint, toPoint, 100);
     }
@@ -774,147 +992,207 @@ public class TestBase {
      * Drag from Point to Point (no accelerate)
      */
     public Sequence dragByPoint(Point fromPoint, Point toPoint) {
-        PointerInput finger = new PointerInput(PointerInput.Kind.TOUCH, "finger");
-        Sequence sequence = new Sequence(finger, 0);
-
-        int steps = 20;
-        int duration = 5000;
-        int stepDuration = duration / steps;
-        double xStep = (toPoint.x - fromPoint.x) / (double) steps;
-        double yStep = (toPoint.y - fromPoint.y) / (double) steps;
+        return dragByPoint(fromPoint, toPoint, GestureBuilder.getDragTemplate());
+    }
 
-        sequence.addAction(finger.createPointerMove(Duration.ofMillis(0), PointerInput.Origin.viewport(), fromPoint.x, fromPoint.y));
-        sequence.addAction(finger.createPointerDown(PointerInput.MouseButton.LEFT.asArg()));
-        for (int i = 1; i <= steps; i++) {
-            int nextX = fromPoint.x + (int) (xStep * i);
-            int nextY = fromPoint.y + (int) (yStep * i);
-            sequence.addAction(finger.createPointerMove(Duration.ofMillis(stepDuration), PointerInput.Origin.viewport(), nextX, nextY));
+    /**
+     * Drag from Point to Point with a move template, e.g. GestureBuilder.getTemplate(1000, 10, 300) for a fast drag
+     */
+    public Sequence dragByPoint(Point fromPoint, Point toPoint, GestureBuilder.Template template) {
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.GESTURE)) {
+            Log.debug("Drag from point ({}, {}) to point ({}, {})", fromPoint.x, fromPoint.y, toPoint.x, toPoint.y);
+            return new GestureBuilder().move(fromPoint, toPoint, template).perform(driver);
         }
-
-        sequence.addAction(finger.createPointerUp(PointerInput.MouseButton.LEFT.asArg()));
-
-        System.out.println(String.format("Drag from point (%s, %s) to point (%s, %s)", fromPoint.x, fromPoint.y, toPoint.x, toPoint.y));
-        driver.perform(Arrays.asList(sequence));
-        return sequence;
     }
 
     public void sendKeys(String keys) throws Exception {
-        sleep(Config.SEND_KEYS_DELAY_IN_MS);
-        System.out.println(String.format("Send keys: %s", keys));
-        try {
-            KeyInput keyInput = new KeyInput("keyboard");
-            Sequence sequence = new Sequence(keyInput, 0);
-            for (int index = 0; index < keys.length(); index++) {
-                int codePoint = Character.codePointAt(keys, index);
-                sequence.addAction(keyInput.createKeyDown(codePoint));
-                sequence.addAction(keyInput.createKeyUp(codePoint));
+        try (StepTelemetry.Span span = telemetry.start(StepTelemetry.CATEGORIES.GESTURE)) {
+            waitForKeyboard(Config.SEND_KEYS_DELAY_IN_MS);
+            Log.debug("Send keys: {}", keys);
+            if (Config.TYPING_MODE == Config.TYPING_MODES.FAST && !hasControlKeys(keys)) {
+                try {
+                    driver.switchTo().activeElement().sendKeys(keys);
+                    sleep(Config.SEND_KEYS_SETTLE_IN_MS);
+                    return;
+                } catch (Exception e) {
+                    Log.warn("Cannot send keys to the focused element, type them instead, error: {}", e.getMessage());
+                }
             }
 
-            driver.perform(Arrays.asList(sequence));
-        } catch (Exception ignored) {
-            if (this.isIos) {
-                getIosDriver().getKeyboard().sendKeys(keys);
-            }
-            else {
-                getAndroidDriver().getKeyboard().sendKeys(keys);
+            // Keys typed by the chunks performed so far, the fallback only types the rest
+            int sentIndex = 0;
+            try {
+                // Long texts are sent in chunks to keep every actions request small
+                KeyInput keyInput = new KeyInput("keyboard");
+                Sequence sequence = new Sequence(keyInput, 0);
+                int keyCount = 0;
+                for (int index = 0; index < keys.length(); ) {
+                    int codePoint = keys.codePointAt(index);
+                    index += Character.charCount(codePoint);
+                    sequence.addAction(keyInput.createKeyDown(codePoint));
+                    sequence.addAction(keyInput.createKeyUp(codePoint));
+
+                    if (++keyCount == Config.TYPING_CHUNK_SIZE && index < keys.length()) {
+                        driver.perform(Arrays.asList(sequence));
+                        sentIndex = index;
+                        sequence = new Sequence(keyInput, 0);
+                        keyCount = 0;
+                    }
+                }
+
+                driver.perform(Arrays.asList(sequence));
+            } catch (Exception ignored) {
+                String remainingKeys = keys.substring(sentIndex);
+                if (this.isIos) {
+                    getIosDriver().getKeyboard().sendKeys(remainingKeys);
+                }
+                else {
+                    getAndroidDriver().getKeyboard().sendKeys(remainingKeys);
+                }
             }
-        }
 
-        sleep(Config.SEND_KEYS_DELAY_IN_MS);
+            sleep(Config.SEND_KEYS_SETTLE_IN_MS);
+        }
     }
 
     public void sendKeys(MobileElement element, String keys) {
-        System.out.println(String.format("Send keys '%s' on element %s", keys, element.getTagName()));
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.GESTURE)) {
+            Log.debug("Send keys '{}' on element {}", keys, element.getTagName());
 
-        element.sendKeys(keys);
+            element.sendKeys(keys);
+        }
     }
 
+    /**
+     * Clear the focused field with one call, fall back to pressing DELETE maxChars times
+     */
     public void clearTextField(int maxChars) throws Exception {
-        System.out.println(String.format("Clear text field, maximum %d characters", maxChars));
-        pressMultiple(PRESS_TYPES.DELETE, maxChars);
+        Log.debug("Clear text field, maximum {} characters", maxChars);
+        try {
+            driver.switchTo().activeElement().clear();
+        } catch (Exception e) {
+            Log.warn("Cannot clear the focused element, press delete instead, error: {}", e.getMessage());
+            pressMultiple(PRESS_TYPES.DELETE, maxChars);
+        }
+    }
+
+    /**
+     * Wait until the keyboard is shown, at most timeoutInMs
+     */
+    public void waitForKeyboard(int timeoutInMs) {
+        long deadline = System.currentTimeMillis() + timeoutInMs;
+        try {
+            while (!(isIos ? getIosDriver().isKeyboardShown() : getAndroidDriver().isKeyboardShown())) {
+                if (System.currentTimeMillis() >= deadline) {
+                    Log.debug("Keyboard is not shown, send keys anyway");
+                    return;
+                }
+
+                Thread.sleep(250);
+            }
+        } catch (Exception e) {
+            // Cannot check the keyboard, wait like a user would
+            sleep((int) Math.max(deadline - System.currentTimeMillis(), 0));
+        }
+    }
+
+    private boolean hasControlKeys(String keys) {
+        for (int index = 0; index < keys.length(); index++) {
+            char c = keys.charAt(index);
+            // Control characters such as backspace, and Selenium Keys in the private use area
+            if (Character.isISOControl(c) || (c >= '\uE000' && c <= '\uF8FF')) return true;
+        }
+
+        return false;
     }
 
     public void press(PRESS_TYPES type) throws Exception {
-        System.out.println(String.format("Press on %s key", type));
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.GESTURE)) {
+            Log.debug("Press on {} key", type);
+            if (type == PRESS_TYPES.HOME || type == PRESS_TYPES.APP_SWITCH) {
+                // Another app could come to foreground
+                appOffset = null;
+            }
 
-        switch (type) {
-            case HOME:
-                if (isIos) {
-                    boolean needPressHome = true;
-                    try {
-                        IOSDriver<MobileElement> iosDriver = getIosDriver();
-                        // isDeviceLocked() and unlockDevice() could failed on some devices
-                        if (iosDriver.isDeviceLocked()) {
-                            iosDriver.unlockDevice();
-                            needPressHome = false;
+            switch (type) {
+                case HOME:
+                    if (isIos) {
+                        boolean needPressHome = true;
+                        try {
+                            IOSDriver<MobileElement> iosDriver = getIosDriver();
+                            // isDeviceLocked() and unlockDevice() could failed on some devices
+                            if (iosDriver.isDeviceLocked()) {
+                                iosDriver.unlockDevice();
+                                needPressHome = false;
+                            }
+                        }
+                        catch (Exception ex) {
+                            Log.warn("Cannot check device locked or unlock device, error: {}", ex.getMessage());
                         }
-                    }
-                    catch (Exception ex) {
-                        System.out.println(String.format("Cannot check device locked or unlock device, error: %s", ex.getMessage()));
-                    }
 
-                    if (needPressHome) {
-                        driver.executeScript("mobile: pressButton", ImmutableMap.of("name", "home"));
+                        if (needPressHome) {
+                            driver.executeScript("mobile: pressButton", ImmutableMap.of("name", "home"));
+                        }
+                    } else {
+                        pressAndroidKey(AndroidKey.HOME);
                     }
-                } else {
-                    pressAndroidKey(AndroidKey.HOME);
-                }
 
-                sleep(Config.IDLE_DELAY_IN_MS);
-                break;
+                    settle(Config.IDLE_DELAY_IN_MS);
+                    break;
 
-            case BACK:
-                pressAndroidKey(AndroidKey.BACK);
-                sleep(Config.IDLE_DELAY_IN_MS);
-                break;
+                case BACK:
+                    pressAndroidKey(AndroidKey.BACK);
+                    settle(Config.IDLE_DELAY_IN_MS);
+                    break;
 
-            case POWER:
-                if (isIos) {
-                    IOSDriver<MobileElement> iosDriver = getIosDriver();
-                    if (iosDriver.isDeviceLocked()) {
-                        iosDriver.unlockDevice();
+                case POWER:
+                    if (isIos) {
+                        IOSDriver<MobileElement> iosDriver = getIosDriver();
+                        if (iosDriver.isDeviceLocked()) {
+                            iosDriver.unlockDevice();
+                        } else {
+                            iosDriver.lockDevice();
+                        }
                     } else {
-                        iosDriver.lockDevice();
+                        pressAndroidKey(AndroidKey.POWER);
                     }
-                } else {
-                    pressAndroidKey(AndroidKey.POWER);
-                }
 
-                sleep(Config.IDLE_DELAY_IN_MS);
-                break;
+                    settle(Config.IDLE_DELAY_IN_MS);
+                    break;
 
-            case APP_SWITCH:
-                pressAndroidKey(AndroidKey.APP_SWITCH);
-                sleep(Config.IDLE_DELAY_IN_MS);
-                break;
+                case APP_SWITCH:
+                    pressAndroidKey(AndroidKey.APP_SWITCH);
+                    settle(Config.IDLE_DELAY_IN_MS);
+                    break;
 
-            case ENTER:
-                if (isIos) {
-                    sendKeys("\n");
-                } else {
-                    pressAndroidKey(AndroidKey.ENTER);
-                }
+                case ENTER:
+                    if (isIos) {
+                        sendKeys("\n");
+                    } else {
+                        pressAndroidKey(AndroidKey.ENTER);
+                    }
 
-                sleep(Config.IDLE_DELAY_IN_MS);
-                break;
+                    settle(Config.IDLE_DELAY_IN_MS);
+                    break;
 
-            case DELETE:
-                if (Config.DEVICE_SOURCE == Config.DEVICE_SOURCE_ENUMS.KOBITON) {
-                    sendKeys("\b");
-                }
-                else {
-                    sendKeys(this.isIos ? "\b" : Keys.BACK_SPACE.toString());
-                }
-                break;
+                case DELETE:
+                    if (Config.DEVICE_SOURCE == Config.DEVICE_SOURCE_ENUMS.KOBITON) {
+                        sendKeys("\b");
+                    }
+                    else {
+                        sendKeys(this.isIos ? "\b" : Keys.BACK_SPACE.toString());
+                    }
+                    break;
 
-            default:
-                throw new Exception(String.format("Don't support press %s key", type));
+                default:
+                    throw new Exception(String.format("Don't support press %s key", type));
 
+            }
         }
     }
 
     public void pressMultiple(PRESS_TYPES type, int count) throws Exception {
-        System.out.println(String.format("Press on %s key %s times", type, count));
+        Log.debug("Press on {} key {} times", type, count);
         switch (type) {
             case DELETE:
                 if (Config.DEVICE_SOURCE == Config.DEVICE_SOURCE_ENUMS.KOBITON) {
@@ -925,8 +1203,16 @@ public class TestBase {
                 }
                 break;
             default:
-                for (int i = 0; i < count; i++) {
-                    press(type);
+                // Only the last press settles with a prefetch of the next step element
+                StepTable.Step next = nextStep;
+                nextStep = null;
+                try {
+                    for (int i = 0; i < count; i++) {
+                        if (i == count - 1) nextStep = next;
+                        press(type);
+                    }
+                } finally {
+                    nextStep = next;
                 }
         }
     }
@@ -936,21 +1222,27 @@ public class TestBase {
     }
 
     public void activateApp(String appPackage) {
-        System.out.println(String.format("Activate app %s", appPackage));
+        Log.debug("Activate app {}", appPackage);
         driver.activateApp(appPackage);
-        sleep(Config.IDLE_DELAY_IN_MS);
+        appOffset = null;
+        webviewNativeRects.clear();
+        settle(Config.IDLE_DELAY_IN_MS);
     }
 
     public void rotateScreen(ScreenOrientation orientation) {
-        System.out.println(String.format("Rotate screen to %s", orientation));
+        Log.debug("Rotate screen to {}", orientation);
         driver.rotate(orientation);
-        sleep(Config.IDLE_DELAY_IN_MS);
+        screenOrientation = orientation;
+        screenSize = null;
+        appOffset = null;
+        webviewNativeRects.clear();
+        settle(Config.IDLE_DELAY_IN_MS);
     }
 
     public void setLocation(Location location) {
-        System.out.println(String.format("Set location to %s", location));
+        Log.debug("Set location to {}", location);
         driver.setLocation(location);
-        sleep(Config.IDLE_DELAY_IN_MS);
+        settle(Config.IDLE_DELAY_IN_MS);
     }
 
     public void hideKeyboard() {
@@ -961,14 +1253,17 @@ public class TestBase {
                 if (!getAndroidDriver().isKeyboardShown()) return;
             }
 
-            System.out.println("Keyboard is shown, hide it");
+            Log.debug("Keyboard is shown, hide it");
             driver.hideKeyboard();
         } catch (Exception ignored) {
         }
     }
 
+    /**
+     * Only sent to the server when the value differs from the one in effect
+     */
     public void setImplicitWaitInMiliSecond(int value) {
-        driver.manage().timeouts().implicitlyWait(value, TimeUnit.MILLISECONDS);
+        implicitWait.set(value);
     }
 
     public void updateSettings() {
@@ -981,71 +1276,94 @@ public class TestBase {
 
     public Point getScreenSize() throws IOException {
         if (screenSize == null) {
-            byte[] screenshotBytes = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
-            ByteArrayInputStream inputStream = new ByteArrayInputStream(screenshotBytes);
-            BufferedImage image = ImageIO.read(inputStream);
-            int width = image.getWidth();
-            int height = image.getHeight();
-            screenSize = new Point(width, height);
+            try {
+                screenSize = ScreenGeometry.getScreenSize(
+                    (TakesScreenshot) driver, ScreenGeometry.getDeviceKey(deviceName, platformVersion, screenOrientation));
+            } catch (IOException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IOException(e);
+            }
         }
 
         return screenSize;
     }
 
+    /**
+     * Offset of the app inside the screen (e.g. iPhone app on iPad), measured once per orientation and app activation
+     */
     public Point getAppOffset() {
         if (!isIos) return new Point(0, 0);
+        if (appOffset != null) return appOffset;
 
         try {
             MobileElement rootElement = findSingleElementBy(By.xpath("//XCUIElementTypeApplication | //XCUIElementTypeOther"));
-            Dimension rootElementSize = rootElement.getSize();
-            Point screenSize = getScreenSize();
-            double screenWidthScaled = screenSize.x / retinaScale;
-            double screenHeightScaled = screenSize.y / retinaScale;
-
-            int offsetX = 0;
-            int offsetY = 0;
-            if (screenWidthScaled > rootElementSize.width) {
-                offsetX = (int) ((screenWidthScaled - rootElementSize.width) / 2);
-            }
-
-            if (screenHeightScaled > rootElementSize.height) {
-                offsetY = (int) ((screenHeightScaled - rootElementSize.height) / 2);
-            }
-
-            return new Point(offsetX, offsetY);
+            appOffset = ScreenGeometry.calculateAppOffset(getScreenSize(), retinaScale, rootElement.getSize());
+            return appOffset;
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.warn("Cannot get app offset", e);
             return new Point(0, 0);
         }
     }
 
     public Point getAbsolutePoint(double relativePointX, double relativePointY) throws IOException {
-        Point screenSize = getScreenSize();
+        return ScreenGeometry.toAbsolutePoint(relativePointX, relativePointY, getScreenSize(), retinaScale);
+    }
 
-        if (retinaScale > 1) {
-            return new Point((int) Math.round(relativePointX * screenSize.x / retinaScale), (int) Math.round(relativePointY * screenSize.y / retinaScale));
-        } else {
-            return new Point((int) Math.round(relativePointX * screenSize.x), (int) Math.round(relativePointY * screenSize.y));
+    public Point getAbsolutePoint(double relativePointX, double relativePointY, Rectangle rect) {
+        return ScreenGeometry.toAbsolutePoint(relativePointX, relativePointY, rect, getAppOffset());
+    }
+
+    /**
+     * Sleep while the UI settles after an action. When the next step touches or swipes a native element, the element
+     * is looked up in the second half of the window with a zero implicit wait, the first half lets the screen change.
+     * The lookup is awaited before returning, so no other command is sent to the session meanwhile, and its requests
+     * are tagged with the command id of the next step.
+     */
+    public void settle(int durationInMs) {
+        StepTable.Step step = nextStep;
+        if (!canPrefetch(step)) {
+            sleep(durationInMs);
+            return;
+        }
+
+        Locator locator = resolveLocator(Locators.get(step.id));
+        sleep(durationInMs / 2);
+        long currentCommandId = getCurrentCommandId();
+        setProxyCommandId(step.id);
+        try {
+            prefetcher.start(step.id, () -> findVisibleElementCore(0, locator));
+            sleep(durationInMs - durationInMs / 2);
+            prefetcher.await();
+        } finally {
+            setProxyCommandId(currentCommandId);
         }
     }
 
-    public Point getAbsolutePoint(double relativePointX, double relativePointY, Rectangle rect) {
-        Point appOffset = getAppOffset();
-        double x = rect.x + rect.width * relativePointX + appOffset.x;
-        double y = rect.y + rect.height * relativePointY + appOffset.y;
-        return new Point((int) x, (int) y);
+    private void setProxyCommandId(long commandId) {
+        if (this.proxy != null) {
+            this.proxy.currentCommandId = commandId;
+        }
+    }
+
+    private boolean canPrefetch(StepTable.Step step) {
+        return Config.PREFETCH_ENABLED && step != null && !step.isWebContext && isNativeContext() &&
+            (step.command == StepTable.COMMANDS.TOUCH_ON_ELEMENT || step.command == StepTable.COMMANDS.SWIPE_FROM_ELEMENT) &&
+            Locators.get(step.id) != null;
     }
 
     public void sleep(int durationInMs) {
-        System.out.println(String.format("Sleep for %d ms", durationInMs));
-        try {
-            Thread.sleep(durationInMs);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        try (StepTelemetry.Span ignored = telemetry.start(StepTelemetry.CATEGORIES.SLEEP)) {
+            Log.debug("Sleep for {} ms", durationInMs);
+            try {
+                Thread.sleep(durationInMs);
+            } catch (InterruptedException e) {
+                Log.warn("Sleep is interrupted", e);
+            }
         }
     }
 
-    protected Document loadXMLFromString(String xml) {
+    public static Document loadXMLFromString(String xml) {
         return Jsoup.parse(xml, Parser.xmlParser());
     }
 
@@ -1064,11 +1382,10 @@ public class TestBase {
     }
 
     public boolean isFlexCorrectEnabled() {
-        return Config.DEVICE_SOURCE == Config.DEVICE_SOURCE_ENUMS.KOBITON &&
-            Boolean.TRUE.equals(this.desiredCaps.getCapability("kobiton:flexCorrect"));
+        return flexCorrectEnabled;
     }
 
-    public Rectangle getRectOfXmlElement(Element element) {
+    public static Rectangle getRectOfXmlElement(Element element) {
         String bounds = element.attr("bounds");
         String[] parts = bounds.split("[,\\[\\]]");
 
@@ -1105,27 +1422,35 @@ public class TestBase {
         deviceListUriBuilder.addParameter("platformName", (String) capabilities.getCapability(MobileCapabilityType.PLATFORM_NAME));
         deviceListUriBuilder.addParameter("deviceGroup", (String) capabilities.getCapability("deviceGroup"));
 
-        Request.Builder deviceListBuilder = new Request.Builder()
-            .url(deviceListUriBuilder.build().toURL())
-            .header(HttpHeaders.AUTHORIZATION, Config.getBasicAuthString())
-            .get();
+        URL deviceListUrl = deviceListUriBuilder.build().toURL();
 
-        try (Response response = httpClient.newCall(deviceListBuilder.build()).execute()) {
-            if (!Utils.isStatusCodeSuccess(response.code())) {
-                throw new Exception(response.body().string());
-            }
+        // Sessions starting together with the same capabilities share one response
+        DeviceListResponse deviceListResponse = SharedResources.DEVICE_INVENTORY.get(deviceListUrl.toString(), new Utils.Task<DeviceListResponse>() {
+            @Override
+            DeviceListResponse exec(int attempt) throws Exception {
+                Request.Builder deviceListBuilder = new Request.Builder()
+                    .url(deviceListUrl)
+                    .header(HttpHeaders.AUTHORIZATION, Config.getBasicAuthString())
+                    .get();
+
+                try (Response response = httpClient.newCall(deviceListBuilder.build()).execute()) {
+                    if (!Utils.isStatusCodeSuccess(response.code())) {
+                        throw new Exception(response.body().string());
+                    }
 
-            DeviceListResponse deviceListResponse = gson.fromJson(response.body().string(), DeviceListResponse.class);
+                    return gson.fromJson(response.body().string(), DeviceListResponse.class);
+                }
+            }
+        });
 
-            List<Device> deviceList = new ArrayList<>();
-            deviceList.addAll(deviceListResponse.cloudDevices);
-            deviceList.addAll(deviceListResponse.privateDevices);
+        List<Device> deviceList = new ArrayList<>();
+        deviceList.addAll(deviceListResponse.cloudDevices);
+        deviceList.addAll(deviceListResponse.privateDevices);
 
-            if (deviceList.isEmpty()) {
-                return null;
-            } else {
-                return deviceList.get(0);
-            }
+        if (deviceList.isEmpty()) {
+            return null;
+        } else {
+            return deviceList.get(0);
         }
     }
 
@@ -1134,6 +1459,7 @@ public class TestBase {
             return null;
         }
 
+        SuiteRunner.markPhase(SuiteRunner.PHASE.BOOKING);
         int tryTime = 1;
         Device device = null;
         String deviceName = (String) capabilities.getCapability(MobileCapabilityType.DEVICE_NAME);
@@ -1141,20 +1467,20 @@ public class TestBase {
         String platformVersion = (String) capabilities.getCapability(MobileCapabilityType.PLATFORM_VERSION);
         String platformName = (String) capabilities.getCapability(MobileCapabilityType.PLATFORM_NAME);
         while (tryTime <= Config.DEVICE_WAITING_MAX_TRY_TIMES) {
-            System.out.println(String.format("Is device with capabilities: (deviceName: %s, deviceGroup: %s, platformName: %s, platformVersion: %s) online? Retrying at %s time",
+            Log.info("Is device with capabilities: (deviceName: {}, deviceGroup: {}, platformName: {}, platformVersion: {}) online? Retrying at {} time",
                 deviceName,
                 deviceGroup,
                 platformName,
                 platformVersion,
-                Utils.convertToOrdinal(tryTime)));
+                Utils.convertToOrdinal(tryTime));
             device = getAvailableDevice(capabilities);
             if (device != null) {
-                System.out.println(String.format("Device is found with capabilities: (deviceName: %s, deviceGroup: %s, platformName: %s, platformVersion: %s)",
+                Log.info("Device is found with capabilities: (deviceName: {}, deviceGroup: {}, platformName: {}, platformVersion: {})",
                     device.deviceName,
                     deviceGroup,
                     device.platformName,
                     device.platformVersion
-                ));
+                );
                 break;
             }
             tryTime++;
@@ -1172,22 +1498,26 @@ public class TestBase {
         return device;
     }
 
+    /**
+     * Download URL of the app version, requested once for all the device sessions of the run
+     */
     public String getAppUrl(int appVersionId) throws Exception {
-        String appUrl = "";
-        OkHttpClient client = new OkHttpClient();
-        Request request = new Request.Builder()
-            .url(String.format("%s/v1/app/versions/%s/downloadUrl", Config.KOBITON_API_URL, appVersionId))
-            .addHeader(HttpHeaders.CONTENT_TYPE, "application/json")
-            .addHeader(HttpHeaders.AUTHORIZATION, Config.getBasicAuthString())
-            .build();
-
-        try (Response response = client.newCall(request).execute()) {
-            String body = response.body().string();
-            JsonObject object = gson.fromJson(body, JsonObject.class);
-            appUrl = object.get("url").getAsString();
-        }
-
-        return appUrl;
+        return SharedResources.APP_URLS.get(appVersionId, new Utils.Task<String>() {
+            @Override
+            String exec(int attempt) throws Exception {
+                Request request = new Request.Builder()
+                    .url(String.format("%s/v1/app/versions/%s/downloadUrl", Config.KOBITON_API_URL, appVersionId))
+                    .addHeader(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .addHeader(HttpHeaders.AUTHORIZATION, Config.getBasicAuthString())
+                    .build();
+
+                try (Response response = httpClient.newCall(request).execute()) {
+                    String body = response.body().string();
+                    JsonObject object = gson.fromJson(body, JsonObject.class);
+                    return object.get("url").getAsString();
+                }
+            }
+        });
     }
 
     public void cropRect(Rectangle rect, Rectangle boundRect) {
@@ -1219,24 +1549,12 @@ public class TestBase {
         rect.height = (int) (rect.height * scale);
     }
 
+    /**
+     * Capture source & screenshot of the current state in the background, cleanup waits for them before quitting
+     */
     public void saveDebugResource() {
-        try {
-            String rootDir = System.getProperty("user.dir");
-            String debugDirName = String.format("%s %s", deviceName, platformVersion);
-            debugDirName = debugDirName.replaceAll("[^a-zA-Z0-9]", "_");
-            File debugDir = new File(rootDir, "debug/" + debugDirName);
-
-            System.out.println(String.format("Save source & screenshot for debugging at %s", debugDir.getAbsolutePath()));
-            debugDir.mkdirs();
-
-            String source = driver.getPageSource();
-            FileUtils.writeStringToFile(new File(debugDir, "source.xml"), source, StandardCharsets.UTF_8);
-
-            File screenshotFile = ((TakesScreenshot) driver).getScreenshotAs(OutputType.FILE);
-            FileUtils.copyFile(screenshotFile, new File(debugDir, "screenshot.png"));
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        if (driver == null || debugArtifacts == null) return;
+        debugArtifacts.captureFailure(driver, getKobitonSessionId(), getCurrentCommandId());
     }
 
     public long getCurrentCommandId() {
@@ -1248,10 +1566,121 @@ public class TestBase {
     }
 
     public void setCurrentCommandId(long currentCommandId) {
-        System.out.println(String.format("Current command: %s", currentCommandId));
+        Log.putContext("command", currentCommandId);
+        telemetry.startStep(currentCommandId);
+        Log.info("Current command: {}", currentCommandId);
         if (this.proxy != null) {
             this.proxy.currentCommandId = currentCommandId;
         }
+        // After the proxy has the command id, the snapshot commands are tagged with the step they belong to
+        if (debugArtifacts != null && driver != null) {
+            debugArtifacts.recordStep(driver, currentCommandId);
+        }
+    }
+
+    /**
+     * Run the recorded steps of the generated step table in order
+     */
+    public void runSteps() throws Exception {
+        List<StepTable.Step> steps = StepTable.getSteps();
+        for (int i = 0; i < steps.size(); i++) {
+            nextStep = i + 1 < steps.size() ? steps.get(i + 1) : null;
+            runStep(steps.get(i));
+        }
+
+        nextStep = null;
+    }
+
+    public void runStep(StepTable.Step step) throws Exception {
+        setCurrentCommandId(step.id);
+        if (step.isWebContext) {
+            switchToWebContext();
+        } else {
+            switchToNativeContext();
+        }
+
+        switch (step.command) {
+            case ACTIVATE_APP:
+                activateApp(step.appPackage);
+                break;
+            case TOUCH_ON_ELEMENT:
+                touchOnElement(findStepElement(step), step.x, step.y);
+                break;
+            case TOUCH_ON_SCROLLABLE_PARENT:
+                if (!step.isOnKeyboard) hideKeyboard();
+                touchOnElement(findVisibleElementOnScrollable(step.timeout, getLocator(step)), step.x, step.y);
+                break;
+            case TOUCH_AT_POINT:
+                touchAtPoint(step.x, step.y);
+                break;
+            case SWIPE_FROM_ELEMENT:
+                if (!step.isOnKeyboard) hideKeyboard();
+                swipeOnElement(findStepElement(step), step.x1, step.y1, step.x2, step.y2, step.duration);
+                break;
+            case SWIPE_BY_POINTS:
+                swipeByPoint(step.x1, step.y1, step.x2, step.y2, step.duration);
+                break;
+            case PRESS:
+                if (step.count > 1) {
+                    pressMultiple(PRESS_TYPES.valueOf(step.value), step.count);
+                } else {
+                    press(PRESS_TYPES.valueOf(step.value));
+                }
+                break;
+            case SEND_KEYS:
+            case SEND_KEYS_WITH_DDT:
+                sendKeys(step.getValue(deviceName, platformVersion));
+                break;
+            case ROTATE:
+                rotateScreen(ScreenOrientation.valueOf(step.orientation));
+                break;
+            case SET_LOCATION:
+                setLocation(new Location((long) Double.parseDouble(step.lat), (long) Double.parseDouble(step.lon), 0.0));
+                break;
+            case GENERATE_RANDOM_PHONE_NUMBER:
+                clearTextField(12);
+                sendKeys(otpService.getRandomPhoneNumber(step.length));
+                break;
+            case FIND_OTP_PHONE_NUMBER:
+                otpService.findOtpPhoneNumber(step.countryCode);
+                clearTextField(12);
+                sendKeys(otpService.phoneNumber);
+                break;
+            case FIND_OTP_EMAIL_ADDRESS:
+                otpService.findOtpEmailAddress();
+                clearTextField(24);
+                sendKeys(otpService.emailAddress);
+                break;
+            case FIND_OTP_CODE:
+                otpService.findOtpCode();
+                clearTextField(8);
+                sendKeys(otpService.otpCode);
+                break;
+            default:
+                throw new Exception(String.format("Not support command %s of step %s", step.command, step.id));
+        }
+    }
+
+    /**
+     * The element prefetched for the step while the previous one settled if it is still in place, otherwise found now
+     */
+    private MobileElement findStepElement(StepTable.Step step) throws Exception {
+        MobileElement element = prefetcher.take(step.id);
+        if (element != null) return element;
+
+        return findVisibleElement(step.timeout, getLocator(step));
+    }
+
+    /**
+     * Locator of the step, package-private so the dispatch can be benchmarked without generated locators
+     */
+    Locator getLocator(StepTable.Step step) throws Exception {
+        Locator locator = Locators.get(step.id);
+        if (locator == null) {
+            throw new Exception(String.format("Cannot find locator of step %s", step.id));
+        }
+
+        return locator;
     }
 
     public static class Device {
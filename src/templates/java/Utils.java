@@ -1,64 +1,69 @@
 package com.kobiton.scriptlessautomation;
 
+import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.openqa.selenium.By;
 import org.openqa.selenium.Rectangle;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class Utils {
+    private static final boolean VIRTUAL_THREAD_ENABLED = Config.USE_VIRTUAL_THREADS && isVirtualThreadSupported();
+
+    /**
+     * Fixed count and interval retry, prefer a RetryPolicy with a time budget for new call sites
+     */
     public static <T> T retry(Task<T> task, int maxAttempts, int intervalInMs) throws Exception {
-        for (int attempt = 1; attempt <= Math.max(maxAttempts, 1); attempt++) {
-            try {
-                return task.exec(attempt);
-            } catch (Exception e) {
-                task.handleException(e, attempt);
-                if (attempt == maxAttempts) throw e;
-            }
+        return RetryPolicy.fixed("Utils.retry", maxAttempts, intervalInMs).execute(task);
+    }
 
-            if (intervalInMs > 0) Thread.sleep(intervalInMs);
+    /**
+     * Wait for the future and rethrow its original exception
+     */
+    public static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            throw e;
         }
-
-        return null;
     }
 
+    /**
+     * Absolute XPath of the element, positional indexes only where siblings share the tag.
+     * Use an XPathIndex to get many XPaths of the same document
+     */
     public static String getXPath(Element element) {
-        StringBuilder xpath = new StringBuilder();
+        List<String> steps = new ArrayList<>();
 
-        while (element != null) {
+        for (; element != null && !(element instanceof Document); element = element.parent()) {
             String tagName = element.tagName();
-            int index = 1;
-
-            for (Element sibling = element.previousElementSibling(); sibling != null; sibling = sibling.previousElementSibling()) {
-                if (sibling.tagName().equals(tagName)) {
-                    index++;
-                }
-            }
+            int index = 0, count = 0;
 
-            boolean hasMultipleSiblings = false;
-            for (Element sibling = element.nextElementSibling(); sibling != null; sibling = sibling.nextElementSibling()) {
-                if (sibling.tagName().equals(tagName)) {
-                    hasMultipleSiblings = true;
-                    break;
-                }
+            // One pass over the siblings gives both the position and whether the tag is shared
+            Element parent = element.parent();
+            for (Element sibling : parent != null ? parent.children() : Collections.singletonList(element)) {
+                if (sibling == element) index = count + 1;
+                if (sibling.tagName().equals(tagName)) count++;
             }
 
-            if (index > 1 || hasMultipleSiblings) {
-                xpath.insert(0, "/" + tagName + "[" + index + "]");
-            } else {
-                xpath.insert(0, "/" + tagName);
-            }
-
-            element = element.parent();
+            steps.add(count > 1 ? tagName + "[" + index + "]" : tagName);
         }
 
-        String finalXpath = xpath.toString();
-        if (finalXpath.startsWith("/#root")) {
-            finalXpath = finalXpath.substring("/#root".length());
+        StringBuilder xpath = new StringBuilder();
+        for (int i = steps.size() - 1; i >= 0; i--) {
+            xpath.append('/').append(steps.get(i));
         }
 
-        return finalXpath;
+        return xpath.toString();
     }
 
     public static String convertToOrdinal(int i) {
@@ -85,6 +90,60 @@ public class Utils {
         return String.join(", ", locatorStrings);
     }
 
+    /**
+     * Create an unstarted thread, a virtual thread when Config.USE_VIRTUAL_THREADS is on and the JVM supports it
+     */
+    public static Thread newThread(String name, Runnable runnable) {
+        return newThread(name, runnable, isVirtualThreadEnabled());
+    }
+
+    public static Thread newThread(String name, Runnable runnable, boolean virtual) {
+        if (virtual) {
+            try {
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builder = builderClass.getMethod("name", String.class).invoke(builder, name);
+                return (Thread) builderClass.getMethod("unstarted", Runnable.class).invoke(builder, runnable);
+            } catch (Exception e) {
+                Log.warn("Cannot create virtual thread, error: {}", e.getMessage());
+            }
+        }
+
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Create an executor running each task on its own virtual thread when Config.USE_VIRTUAL_THREADS is on,
+     * a cached thread pool otherwise
+     */
+    public static ExecutorService newExecutor(String name) {
+        if (isVirtualThreadEnabled()) {
+            try {
+                Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) method.invoke(null);
+            } catch (Exception e) {
+                Log.warn("Cannot create virtual thread executor, error: {}", e.getMessage());
+            }
+        }
+
+        return Executors.newCachedThreadPool(runnable -> newThread(name, runnable));
+    }
+
+    public static boolean isVirtualThreadEnabled() {
+        return VIRTUAL_THREAD_ENABLED;
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
     public static boolean isRectangleInclude(Rectangle rect1, Rectangle rect2) {
         return rect1.x <= rect2.x &&
             rect1.y <= rect2.y &&
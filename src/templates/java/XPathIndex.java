@@ -0,0 +1,156 @@
+package com.kobiton.scriptlessautomation;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * XPaths of the elements of one page source. The positional index of every element is computed in a single pass
+ * over the document, so each XPath afterwards only costs the depth of the element.
+ */
+public class XPathIndex {
+    // Attributes a locator can be built on, the most stable first
+    public static final String[] IDENTIFYING_ATTRIBUTES = {"resource-id", "content-desc", "name"};
+
+    private final Map<Element, Step> steps = new IdentityHashMap<>();
+    // Elements by their positional step like "XCUIElementTypeCell[2]", to find the shortest unique suffix
+    private final Map<String, List<Element>> elementsByStep = new HashMap<>();
+    // Occurrences of each attribute value like "name=Login"
+    private final Map<String, Integer> attributeValueCounts = new HashMap<>();
+
+    private static class Step {
+        final String tagName;
+        final int index;
+        final boolean isTagShared;
+
+        Step(String tagName, int index, boolean isTagShared) {
+            this.tagName = tagName;
+            this.index = index;
+            this.isTagShared = isTagShared;
+        }
+
+        String positional() {
+            return tagName + "[" + index + "]";
+        }
+
+        @Override
+        public String toString() {
+            return isTagShared ? positional() : tagName;
+        }
+    }
+
+    public XPathIndex(Document document) {
+        indexChildren(document.children());
+    }
+
+    private void indexChildren(List<Element> children) {
+        Map<String, Integer> tagCounts = new HashMap<>();
+        for (Element child : children) {
+            tagCounts.merge(child.tagName(), 1, Integer::sum);
+        }
+
+        Map<String, Integer> tagIndexes = new HashMap<>();
+        for (Element child : children) {
+            String tagName = child.tagName();
+            Step step = new Step(tagName, tagIndexes.merge(tagName, 1, Integer::sum), tagCounts.get(tagName) > 1);
+            steps.put(child, step);
+            elementsByStep.computeIfAbsent(step.positional(), key -> new ArrayList<>()).add(child);
+
+            for (String attribute : IDENTIFYING_ATTRIBUTES) {
+                String value = child.attr(attribute);
+                if (!value.isEmpty()) attributeValueCounts.merge(attribute + "=" + value, 1, Integer::sum);
+            }
+
+            indexChildren(child.children());
+        }
+    }
+
+    /**
+     * Absolute XPath, the same as Utils.getXPath
+     */
+    public String getXPath(Element element) {
+        List<Step> path = getPath(element);
+        StringBuilder xpath = new StringBuilder();
+        for (int i = path.size() - 1; i >= 0; i--) {
+            xpath.append('/').append(path.get(i));
+        }
+
+        return xpath.toString();
+    }
+
+    /**
+     * Shortest XPath matching only this element: an identifying attribute with a unique value, or the shortest
+     * unique tail of the positional path like "//XCUIElementTypeTable[1]/XCUIElementTypeCell[3]"
+     */
+    public String getShortestUniqueXPath(Element element) {
+        String shortest = null;
+        for (String attribute : IDENTIFYING_ATTRIBUTES) {
+            String value = element.attr(attribute);
+            // Values with quotes need concat() in XPath 1.0, the positional path is good enough for them
+            if (value.isEmpty() || value.contains("'") || attributeValueCounts.get(attribute + "=" + value) != 1) continue;
+
+            String xpath = String.format("//%s[@%s='%s']", element.tagName(), attribute, value);
+            if (shortest == null || xpath.length() < shortest.length()) shortest = xpath;
+        }
+
+        String suffix = getUniqueSuffix(element);
+        if (shortest == null || suffix.length() < shortest.length()) shortest = suffix;
+        return shortest;
+    }
+
+    private String getUniqueSuffix(Element element) {
+        List<Step> path = getPath(element);
+        List<Element> candidates = elementsByStep.get(path.get(0).positional());
+        int length = 1;
+
+        // Keep the elements whose ancestors match one more step of the path until only this element is left
+        List<Element> ancestors = new ArrayList<>(candidates);
+        while (candidates.size() > 1 && length < path.size()) {
+            Step step = path.get(length);
+            List<Element> nextCandidates = new ArrayList<>();
+            List<Element> nextAncestors = new ArrayList<>();
+            for (int i = 0; i < candidates.size(); i++) {
+                Element ancestor = ancestors.get(i).parent();
+                Step ancestorStep = ancestor != null ? steps.get(ancestor) : null;
+                if (ancestorStep != null && ancestorStep.tagName.equals(step.tagName) && ancestorStep.index == step.index) {
+                    nextCandidates.add(candidates.get(i));
+                    nextAncestors.add(ancestor);
+                }
+            }
+
+            candidates = nextCandidates;
+            ancestors = nextAncestors;
+            length++;
+        }
+
+        if (candidates.size() > 1) return getXPath(element);
+
+        StringBuilder xpath = new StringBuilder("/");
+        for (int i = length - 1; i >= 0; i--) {
+            xpath.append('/').append(path.get(i).positional());
+        }
+
+        return xpath.toString();
+    }
+
+    /**
+     * Steps from the element up to the root element
+     */
+    private List<Step> getPath(Element element) {
+        List<Step> path = new ArrayList<>();
+        for (Step step = steps.get(element); step != null; element = element.parent(), step = steps.get(element)) {
+            path.add(step);
+        }
+
+        if (path.isEmpty()) {
+            throw new IllegalArgumentException("Element is not in the indexed document: " + element.tagName());
+        }
+
+        return path;
+    }
+}
@@ -0,0 +1,76 @@
+package com.kobiton.scriptlessautomation;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Checks that a long recording is not left to the interpreter. Steps were generated as code, and past 8000 bytes of
+ * bytecode HotSpot does not JIT compile a method (-XX:+DontCompileHugeMethods, the default), so scripts of 500 or
+ * more steps ran interpreted. The step table is dispatched by TestBase.runStep, whose size does not depend on the
+ * recording. The check runs a table of the given size (default 1000 steps) in a child JVM with -XX:+PrintCompilation
+ * and fails unless runStep is compiled:
+ * java -cp target/benchmarks.jar com.kobiton.scriptlessautomation.CompilationCheck [steps]
+ */
+public class CompilationCheck {
+    private static final String CHILD_ARG = "--dispatch";
+    private static final String RUN_STEP = TestBase.class.getName() + "::runStep";
+    // PrintCompilation line, e.g. "  1234  567       4       com.kobiton.scriptlessautomation.TestBase::runStep (612 bytes)"
+    private static final Pattern COMPILATION_LINE = Pattern.compile("\\s(\\d)\\s+" + Pattern.quote(RUN_STEP) + " \\((\\d+) bytes\\)");
+    private static final long DISPATCH_DURATION_IN_MS = 3000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && CHILD_ARG.equals(args[0])) {
+            dispatch(Integer.parseInt(args[1]));
+            return;
+        }
+
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        String javaBin = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        Process process = new ProcessBuilder(javaBin, "-XX:+PrintCompilation", "-cp", System.getProperty("java.class.path"),
+            CompilationCheck.class.getName(), CHILD_ARG, String.valueOf(steps))
+            .redirectErrorStream(true)
+            .start();
+
+        int highestTier = 0, size = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = COMPILATION_LINE.matcher(line);
+                if (matcher.find() && !line.contains("made not entrant")) {
+                    highestTier = Math.max(highestTier, Integer.parseInt(matcher.group(1)));
+                    size = Integer.parseInt(matcher.group(2));
+                }
+            }
+        }
+
+        if (process.waitFor() != 0) {
+            throw new IllegalStateException("The dispatch JVM failed, exit code " + process.exitValue());
+        }
+
+        if (highestTier == 0) {
+            System.out.printf("FAIL: %s was not compiled while running %s steps%n", RUN_STEP, steps);
+            System.exit(1);
+        }
+
+        System.out.printf("OK: %s (%s bytes) is compiled at tier %s while running %s steps%n", RUN_STEP, size, highestTier, steps);
+    }
+
+    private static void dispatch(int steps) throws Exception {
+        List<StepTable.Step> stepTable = StepTable.read(new StringReader(StepTableBenchmark.buildStepsJson(steps)));
+        StepTableBenchmark.DispatchOnlyTest test = new StepTableBenchmark.DispatchOnlyTest();
+        long deadline = System.currentTimeMillis() + DISPATCH_DURATION_IN_MS;
+        while (System.currentTimeMillis() < deadline) {
+            for (StepTable.Step step : stepTable) {
+                test.runStep(step);
+            }
+        }
+
+        System.out.println("sink " + test.sink);
+    }
+}
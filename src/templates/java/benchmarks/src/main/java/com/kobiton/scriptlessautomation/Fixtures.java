@@ -0,0 +1,42 @@
+package com.kobiton.scriptlessautomation;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Loads benchmark inputs from the bundled fixtures, or from -Dkobiton.fixturesDir to benchmark recorded ones
+ * (e.g. a debug/.../source.xml.gz saved by a failed test, renamed to the fixture it replaces)
+ */
+public class Fixtures {
+    public static final String FIXTURES_DIR = System.getProperty("kobiton.fixturesDir");
+
+    public static String read(String name) {
+        try (InputStream inputStream = open(name)) {
+            if (inputStream == null) {
+                throw new IllegalArgumentException("Cannot find fixture " + name);
+            }
+
+            return IOUtils.toString(inputStream, StandardCharsets.UTF_8);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot read fixture " + name, e);
+        }
+    }
+
+    private static InputStream open(String name) throws Exception {
+        if (FIXTURES_DIR != null) {
+            File file = new File(FIXTURES_DIR, name);
+            File gzipFile = new File(FIXTURES_DIR, name + ".gz");
+            if (file.isFile()) return new FileInputStream(file);
+            if (gzipFile.isFile()) return new GZIPInputStream(new FileInputStream(gzipFile));
+        }
+
+        return Fixtures.class.getClassLoader().getResourceAsStream("fixtures/" + name);
+    }
+}
@@ -0,0 +1,47 @@
+package com.kobiton.scriptlessautomation;
+
+import org.jsoup.nodes.Element;
+
+/**
+ * The previous Utils.getXPath, kept as the baseline of XPathBenchmark: both siblings directions are scanned
+ * at every level and each step is inserted at the front of the path
+ */
+public class LegacyXPath {
+    public static String getXPath(Element element) {
+        StringBuilder xpath = new StringBuilder();
+
+        while (element != null) {
+            String tagName = element.tagName();
+            int index = 1;
+
+            for (Element sibling = element.previousElementSibling(); sibling != null; sibling = sibling.previousElementSibling()) {
+                if (sibling.tagName().equals(tagName)) {
+                    index++;
+                }
+            }
+
+            boolean hasMultipleSiblings = false;
+            for (Element sibling = element.nextElementSibling(); sibling != null; sibling = sibling.nextElementSibling()) {
+                if (sibling.tagName().equals(tagName)) {
+                    hasMultipleSiblings = true;
+                    break;
+                }
+            }
+
+            if (index > 1 || hasMultipleSiblings) {
+                xpath.insert(0, "/" + tagName + "[" + index + "]");
+            } else {
+                xpath.insert(0, "/" + tagName);
+            }
+
+            element = element.parent();
+        }
+
+        String finalXpath = xpath.toString();
+        if (finalXpath.startsWith("/#root")) {
+            finalXpath = finalXpath.substring("/#root".length());
+        }
+
+        return finalXpath;
+    }
+}
@@ -0,0 +1,62 @@
+package com.kobiton.scriptlessautomation;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openqa.selenium.Rectangle;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Native page source handling: parsing, text extraction used to pick a web context and bounds of elements.
+ * XPaths are compared in XPathBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PageSourceBenchmark {
+    @Param({"android-source.xml", "ios-source.xml"})
+    public String fixture;
+
+    private String source;
+    private boolean isIos;
+    private Document document;
+    private List<Element> boundedElements;
+
+    @Setup
+    public void setup() {
+        source = Fixtures.read(fixture);
+        isIos = fixture.startsWith("ios");
+        document = TestBase.loadXMLFromString(source);
+        boundedElements = document.select("[bounds]");
+    }
+
+    @Benchmark
+    public Document loadXMLFromString() {
+        return TestBase.loadXMLFromString(source);
+    }
+
+    @Benchmark
+    public List<String> extractNativeTexts() {
+        return TestBase.extractNativeTexts(document, isIos);
+    }
+
+    @Benchmark
+    public List<String> parseAndExtractNativeTexts() {
+        return TestBase.extractNativeTexts(TestBase.loadXMLFromString(source), isIos);
+    }
+
+    @Benchmark
+    public void getRectOfXmlElements(Blackhole blackhole) {
+        // Only Android page sources have bounds
+        for (Element element : boundedElements) {
+            Rectangle rect = TestBase.getRectOfXmlElement(element);
+            blackhole.consume(rect);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.kobiton.scriptlessautomation;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import fi.iki.elonen.NanoHTTPD;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Response handling of the local proxy for every driver command: the pass-through of a large page source response,
+ * and the JSON Wire to W3C conversion of new session and error responses
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProxyServerBenchmark {
+    private final Gson gson = new Gson();
+    private String sessionResponse;
+    private String errorResponse;
+    private String sourceResponse;
+    private ProxyServer proxy;
+
+    @Setup
+    public void setup() {
+        sessionResponse = Fixtures.read("json-wire-session.json");
+        errorResponse = Fixtures.read("json-wire-error.json");
+
+        JsonObject sourceResponseJson = new JsonObject();
+        sourceResponseJson.addProperty("value", Fixtures.read("android-source.xml"));
+        sourceResponse = sourceResponseJson.toString();
+
+        // Not listening, the JSON Wire session response switches it to W3C conversion
+        proxy = new ProxyServer(0);
+        proxy.rewriteResponseBody("/session", NanoHTTPD.Method.POST, 200, sessionResponse);
+    }
+
+    @Benchmark
+    public String rewriteSourceResponse() {
+        return proxy.rewriteResponseBody("/session/1/source", NanoHTTPD.Method.GET, 200, sourceResponse);
+    }
+
+    @Benchmark
+    public String trackContextOfSourceResponse() {
+        // Done for every command, only context commands are parsed
+        proxy.trackContext("/session/1/source", NanoHTTPD.Method.GET, 200, null, sourceResponse, null);
+        return proxy.currentContext;
+    }
+
+    @Benchmark
+    public String rewriteSessionResponse() {
+        return proxy.rewriteResponseBody("/session", NanoHTTPD.Method.POST, 200, sessionResponse);
+    }
+
+    @Benchmark
+    public String rewriteErrorResponse() {
+        return proxy.rewriteResponseBody("/session/1/element", NanoHTTPD.Method.POST, 404, errorResponse);
+    }
+
+    @Benchmark
+    public JsonObject convertSessionResponseToW3C() {
+        return ProxyServer.convertSessionResponseToW3C(gson.fromJson(sessionResponse, JsonObject.class));
+    }
+
+    @Benchmark
+    public JsonObject convertErrorResponseToW3C() {
+        return ProxyServer.convertErrorResponseToW3C(gson.fromJson(errorResponse, JsonObject.class));
+    }
+}
@@ -0,0 +1,164 @@
+package com.kobiton.scriptlessautomation;
+
+import io.appium.java_client.MobileElement;
+import org.openjdk.jmh.annotations.*;
+import org.openqa.selenium.ScreenOrientation;
+import org.openqa.selenium.html5.Location;
+
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the step table itself: parsing steps.json into steps, and dispatching the steps through
+ * TestBase.runStep with every driver action stubbed out. The generated table mixes the recorded commands in the
+ * usual proportions, mostly touches and typing; OTP steps are left out since they call the OTP service.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StepTableBenchmark {
+    private static final String[] STEP_TEMPLATES = {
+        "{\"id\":%d,\"command\":\"TOUCH_ON_ELEMENT\",\"timeout\":5000,\"x\":0.387,\"y\":0.43}",
+        "{\"id\":%d,\"command\":\"SEND_KEYS\",\"value\":\"kobiton %d\"}",
+        "{\"id\":%d,\"command\":\"TOUCH_ON_ELEMENT\",\"isWebContext\":true,\"timeout\":8000,\"x\":0.359,\"y\":0.3}",
+        "{\"id\":%d,\"command\":\"PRESS\",\"value\":\"BACK\",\"count\":1}",
+        "{\"id\":%d,\"command\":\"SWIPE_FROM_ELEMENT\",\"timeout\":5000,\"x1\":0.5,\"y1\":0.8,\"x2\":0.5,\"y2\":0.2,\"duration\":637}",
+        "{\"id\":%d,\"command\":\"TOUCH_ON_ELEMENT\",\"timeout\":5000,\"x\":0.5,\"y\":0.5}",
+        "{\"id\":%d,\"command\":\"SWIPE_BY_POINTS\",\"x1\":0.5,\"y1\":0.8,\"x2\":0.5,\"y2\":0.2,\"duration\":300}",
+        "{\"id\":%d,\"command\":\"TOUCH_AT_POINT\",\"x\":0.1,\"y\":0.9}",
+        "{\"id\":%d,\"command\":\"ROTATE\",\"orientation\":\"LANDSCAPE\"}",
+        "{\"id\":%d,\"command\":\"SET_LOCATION\",\"lat\":\"10.7\",\"lon\":\"106.6\"}"
+    };
+
+    @Param({"100", "500", "1000", "5000"})
+    public int steps;
+
+    private String stepsJson;
+    private List<StepTable.Step> stepTable;
+    private DispatchOnlyTest test;
+
+    @Setup
+    public void setup() {
+        stepsJson = buildStepsJson(steps);
+        stepTable = StepTable.read(new StringReader(stepsJson));
+        test = new DispatchOnlyTest();
+    }
+
+    /**
+     * steps.json of a recording with the given number of steps
+     */
+    static String buildStepsJson(int steps) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < steps; i++) {
+            if (i > 0) json.append(',');
+            json.append(String.format(STEP_TEMPLATES[i % STEP_TEMPLATES.length], 17000 + i, i));
+        }
+
+        return json.append(']').toString();
+    }
+
+    @Benchmark
+    public List<StepTable.Step> loadSteps() {
+        return StepTable.read(new StringReader(stepsJson));
+    }
+
+    @Benchmark
+    public long dispatchSteps() throws Exception {
+        for (StepTable.Step step : stepTable) {
+            test.runStep(step);
+        }
+
+        return test.sink;
+    }
+
+    /**
+     * Test whose actions only record their arguments, so runStep costs only the dispatch
+     */
+    static class DispatchOnlyTest extends TestBase {
+        private static final Locator LOCATOR = new Locator(Locator.NO_STEP_ID);
+
+        long sink;
+
+        @Override
+        public void setCurrentCommandId(long currentCommandId) {
+            sink += currentCommandId;
+        }
+
+        @Override
+        public void switchToNativeContext() {
+            sink++;
+        }
+
+        @Override
+        public String switchToWebContext() {
+            sink++;
+            return null;
+        }
+
+        @Override
+        Locator getLocator(StepTable.Step step) {
+            return LOCATOR;
+        }
+
+        @Override
+        public MobileElement findVisibleElement(int timeoutInMiliSeconds, Locator locator) {
+            sink += timeoutInMiliSeconds;
+            return null;
+        }
+
+        @Override
+        public MobileElement findVisibleElementOnScrollable(int timeoutInMiliSeconds, Locator locator) {
+            sink += timeoutInMiliSeconds;
+            return null;
+        }
+
+        @Override
+        public void touchOnElement(MobileElement element, double relativePointX, double relativePointY) {
+            sink += (long) (relativePointX * 1000 + relativePointY * 1000);
+        }
+
+        @Override
+        public void touchAtPoint(double relativePointX, double relativePointY) {
+            sink += (long) (relativePointX * 1000 + relativePointY * 1000);
+        }
+
+        @Override
+        public void swipeOnElement(MobileElement element, double relativePointX1, double relativePointY1, double relativePointX2, double relativePointY2, int durationInMs) {
+            sink += durationInMs;
+        }
+
+        @Override
+        public void swipeByPoint(double fromRelativePointX, double fromRelativePointY, double toRelativePointX, double toRelativePointY, int durationInMs) {
+            sink += durationInMs;
+        }
+
+        @Override
+        public void press(PRESS_TYPES type) {
+            sink += type.ordinal();
+        }
+
+        @Override
+        public void sendKeys(String keys) {
+            sink += keys.length();
+        }
+
+        @Override
+        public void hideKeyboard() {
+            sink++;
+        }
+
+        @Override
+        public void rotateScreen(ScreenOrientation orientation) {
+            sink += orientation.ordinal();
+        }
+
+        @Override
+        public void setLocation(Location location) {
+            sink += (long) location.getLatitude();
+        }
+    }
+}
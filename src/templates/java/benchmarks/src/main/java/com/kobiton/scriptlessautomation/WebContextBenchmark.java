@@ -0,0 +1,49 @@
+package com.kobiton.scriptlessautomation;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scoring of web contexts against the texts of the native page source, done for every context on each web context switch
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WebContextBenchmark {
+    private List<String> nativeTexts;
+    private String matchingSource;
+    private String otherSource;
+
+    @Setup
+    public void setup() {
+        nativeTexts = TestBase.extractNativeTexts(TestBase.loadXMLFromString(Fixtures.read("android-source.xml")), false);
+        matchingSource = Fixtures.read("webview.html");
+        otherSource = Fixtures.read("webview-other.html");
+    }
+
+    @Benchmark
+    public TestBase.ContextInfo scoreWebContext() {
+        TestBase.ContextInfo contextInfo = new TestBase.ContextInfo("WEBVIEW_1");
+        TestBase.scoreWebContext(contextInfo, matchingSource, nativeTexts);
+        return contextInfo;
+    }
+
+    @Benchmark
+    public TestBase.ContextInfo scoreAndSelectBestContext() {
+        List<TestBase.ContextInfo> contextInfos = new ArrayList<>();
+        String[] sources = {otherSource, matchingSource};
+        for (int i = 0; i < sources.length; i++) {
+            TestBase.ContextInfo contextInfo = new TestBase.ContextInfo("WEBVIEW_" + i);
+            TestBase.scoreWebContext(contextInfo, sources[i], nativeTexts);
+            contextInfos.add(contextInfo);
+        }
+
+        return TestBase.selectBestContext(contextInfos);
+    }
+}
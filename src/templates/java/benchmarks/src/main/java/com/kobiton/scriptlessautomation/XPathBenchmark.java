@@ -0,0 +1,86 @@
+package com.kobiton.scriptlessautomation;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * XPaths of all the leaf elements of a page source: the previous getXPath against the current one and against
+ * an XPathIndex built once for the document. "deep-wide" is a generated iOS like hierarchy of 40 levels with
+ * 50 cells on each level, the worst case for sibling scans
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class XPathBenchmark {
+    private static final int DEEP_WIDE_DEPTH = 40;
+    private static final int DEEP_WIDE_WIDTH = 50;
+
+    @Param({"android-source.xml", "ios-source.xml", "deep-wide"})
+    public String fixture;
+
+    private Document document;
+    private List<Element> leafElements;
+
+    @Setup
+    public void setup() {
+        document = TestBase.loadXMLFromString(fixture.equals("deep-wide") ? buildDeepWideSource() : Fixtures.read(fixture));
+        leafElements = document.getAllElements().stream()
+            .filter(element -> element.children().isEmpty())
+            .collect(Collectors.toList());
+    }
+
+    private static String buildDeepWideSource() {
+        StringBuilder source = new StringBuilder("<AppiumAUT>");
+        for (int depth = 0; depth < DEEP_WIDE_DEPTH; depth++) {
+            source.append("<XCUIElementTypeOther>");
+            for (int i = 0; i < DEEP_WIDE_WIDTH; i++) {
+                source.append("<XCUIElementTypeCell name=\"cell ").append(i % 10).append("\"/>");
+            }
+        }
+
+        for (int depth = 0; depth < DEEP_WIDE_DEPTH; depth++) {
+            source.append("</XCUIElementTypeOther>");
+        }
+
+        return source.append("</AppiumAUT>").toString();
+    }
+
+    @Benchmark
+    public void legacyGetXPath(Blackhole blackhole) {
+        for (Element element : leafElements) {
+            blackhole.consume(LegacyXPath.getXPath(element));
+        }
+    }
+
+    @Benchmark
+    public void getXPath(Blackhole blackhole) {
+        for (Element element : leafElements) {
+            blackhole.consume(Utils.getXPath(element));
+        }
+    }
+
+    @Benchmark
+    public void indexAndGetXPath(Blackhole blackhole) {
+        XPathIndex xpathIndex = new XPathIndex(document);
+        for (Element element : leafElements) {
+            blackhole.consume(xpathIndex.getXPath(element));
+        }
+    }
+
+    @Benchmark
+    public void indexAndGetShortestUniqueXPath(Blackhole blackhole) {
+        XPathIndex xpathIndex = new XPathIndex(document);
+        for (Element element : leafElements) {
+            blackhole.consume(xpathIndex.getShortestUniqueXPath(element));
+        }
+    }
+}
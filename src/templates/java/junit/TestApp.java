@@ -1,18 +1,10 @@
 package com.kobiton.scriptlessautomation;
 
-import io.appium.java_client.MobileBy;
-import io.appium.java_client.MobileElement;
-import io.appium.java_client.remote.MobileCapabilityType;
 import org.junit.Before;
 import org.junit.After;
 import org.junit.Test;
 import org.junit.Assert;
-import org.openqa.selenium.By;
-import org.openqa.selenium.Point;
-import org.openqa.selenium.Rectangle;
-import org.openqa.selenium.ScreenOrientation;
 import org.openqa.selenium.remote.DesiredCapabilities;
-import org.openqa.selenium.html5.Location;
 
 public class TestApp extends TestBase {
     @Before
@@ -22,6 +14,7 @@ public class TestApp extends TestBase {
             "your_api_key",
             Config.API_KEY
         );
+        OtpResourcePool.getInstance().prebook();
     }
 
     {{testCases}}
@@ -30,9 +23,9 @@ public class TestApp extends TestBase {
             updateSettings();
             switchToNativeContext();
             setImplicitWaitInMiliSecond(Config.IMPLICIT_WAIT_IN_MS);
-            {{testScript}}
+            runSteps();
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.error("Test failed", e);
             saveDebugResource();
             throw e;
         }
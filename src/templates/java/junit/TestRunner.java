@@ -1,18 +1,49 @@
 package com.kobiton.scriptlessautomation;
 
-import org.junit.experimental.ParallelComputer;
+import org.junit.Test;
 import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
 import org.junit.runner.Result;
 import org.junit.runner.notification.Failure;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
 public class TestRunner {
-    public static void main(String[] args) {
-        Result result = JUnitCore.runClasses(new ParallelComputer(true, true), TestApp.class);
+    public static void main(String[] args) throws Exception {
+        OtpResourcePool.getInstance().prebook();
+        List<SuiteRunner.TestCase> testCases = new ArrayList<>();
+        List<Failure> failures = new ArrayList<>();
+
+        for (Method method : TestApp.class.getMethods()) {
+            if (!method.isAnnotationPresent(Test.class)) continue;
+
+            String methodName = method.getName();
+            testCases.add(new SuiteRunner.TestCase(methodName, new SuiteRunner.Task() {
+                @Override
+                boolean exec() {
+                    Result result = new JUnitCore().run(Request.method(TestApp.class, methodName));
+                    synchronized (failures) {
+                        failures.addAll(result.getFailures());
+                    }
+
+                    return result.wasSuccessful();
+                }
+            }));
+        }
+
+        SuiteRunner suiteRunner = new SuiteRunner(Math.min(Config.MAX_PARALLEL_SESSIONS, testCases.size()));
+        List<SuiteRunner.TimelineEntry> timeline = suiteRunner.run(testCases);
+
+        StepTelemetry.writeDeviceSummary();
 
-        for (Failure failure : result.getFailures()) {
-            System.out.println(failure.toString());
+        for (Failure failure : failures) {
+            Log.error(failure.toString());
         }
 
-        System.out.println(result.wasSuccessful() ? "All tests run successful" : "Not all tests run successful");
+        boolean successful = timeline.stream().allMatch(entry -> entry.passed);
+        Log.info(successful ? "All tests run successful" : "Not all tests run successful");
+        Log.flush();
     }
 }
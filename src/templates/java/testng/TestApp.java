@@ -1,15 +1,7 @@
 package com.kobiton.scriptlessautomation;
 
-import io.appium.java_client.MobileBy;
-import io.appium.java_client.MobileElement;
-import io.appium.java_client.remote.MobileCapabilityType;
 import org.testng.Reporter;
-import org.openqa.selenium.By;
-import org.openqa.selenium.Point;
-import org.openqa.selenium.Rectangle;
-import org.openqa.selenium.ScreenOrientation;
 import org.openqa.selenium.remote.DesiredCapabilities;
-import org.openqa.selenium.html5.Location;
 
 public class TestApp extends TestBase {
     public void runTest() throws Exception {
@@ -17,9 +9,9 @@ public class TestApp extends TestBase {
             updateSettings();
             switchToNativeContext();
             setImplicitWaitInMiliSecond(Config.IMPLICIT_WAIT_IN_MS);
-            {{testScript}}
+            runSteps();
         } catch (Exception e) {
-            e.printStackTrace();
+            Log.error("Test failed", e);
             saveDebugResource();
             throw e;
         } finally {
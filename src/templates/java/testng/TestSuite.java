@@ -1,6 +1,7 @@
 package com.kobiton.scriptlessautomation;
 
 import org.openqa.selenium.remote.DesiredCapabilities;
+import org.testng.annotations.AfterSuite;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 import org.testng.Assert;
@@ -13,7 +14,12 @@ public class TestSuite {
             "your_api_key",
             "Please update value for the API_KEY constant first. See more at README.md file."
         );
+        OtpResourcePool.getInstance().prebook();
     }
 
     {{testCases}}
+    @AfterSuite(alwaysRun = true)
+    public void afterSuite() {
+        StepTelemetry.writeDeviceSummary();
+    }
 }
@@ -1,6 +1,35 @@
 const element = arguments[0]
 const command = arguments[1]
 
+function insertKobitonWebview() {
+  const elementId = '__kobiton_webview__'
+  let webView = document.getElementById(elementId)
+  if (webView) return true
+
+  webView = document.createElement('kobiton-webview-element')
+  webView.id = elementId
+  webView.style.left = '0px'
+  webView.style.top = '0px'
+  webView.style.width = '100%'
+  webView.style.height = '100%'
+  webView.style.position = 'fixed'
+  webView.setAttribute('aria-label', elementId)
+  webView.appendChild(document.createTextNode(elementId))
+
+  webView.style.pointerEvents = 'none';
+  webView.style.zIndex = '-2147483647';
+  webView.style.color = 'transparent';
+  webView.style.backgroundColor = 'transparent';
+  webView.style.border = 'none';
+  webView.style.outline = 'none';
+  webView.style.margin = '0 0 0 0';
+  webView.style.padding = '0 0 0 0';
+  webView.style.overflow = 'hidden';
+
+  document.body.appendChild(webView)
+  return true
+}
+
 switch (command) {
   case "isElementVisible":
     const visible = !!(element.offsetWidth || element.offsetHeight || element.getClientRects().length)
@@ -27,32 +56,23 @@ switch (command) {
     return JSON.stringify(result)
 
   case "insertKobitonWebview":
-    const elementId = '__kobiton_webview__'
-    let webView = document.getElementById(elementId)
-    if (webView) return true
-
-    webView = document.createElement('kobiton-webview-element')
-    webView.id = elementId
-    webView.style.left = '0px'
-    webView.style.top = '0px'
-    webView.style.width = '100%'
-    webView.style.height = '100%'
-    webView.style.position = 'fixed'
-    webView.setAttribute('aria-label', elementId)
-    webView.appendChild(document.createTextNode(elementId))
-
-    webView.style.pointerEvents = 'none';
-    webView.style.zIndex = '-2147483647';
-    webView.style.color = 'transparent';
-    webView.style.backgroundColor = 'transparent';
-    webView.style.border = 'none';
-    webView.style.outline = 'none';
-    webView.style.margin = '0 0 0 0';
-    webView.style.padding = '0 0 0 0';
-    webView.style.overflow = 'hidden';
-
-    document.body.appendChild(webView)
-    return true
+    return insertKobitonWebview()
+  case "getGeometry": {
+    // Scale, element rect and viewport in one call, so the webview frame only needs to be probed once
+    insertKobitonWebview()
+    const ratio = window.devicePixelRatio
+    const elementRect = element.getBoundingClientRect()
+
+    return JSON.stringify({
+      x: Math.round(elementRect.x * ratio),
+      y: Math.round(elementRect.y * ratio),
+      width: Math.round(elementRect.width * ratio),
+      height: Math.round(elementRect.height * ratio),
+      scale: window.visualViewport ? window.visualViewport.scale : 1,
+      windowInnerWidth: Math.round(window.innerWidth * ratio),
+      windowInnerHeight: Math.round(window.innerHeight * ratio)
+    })
+  }
   default:
     throw new Error(`Unsupported command: ${command}`)
 }